@@ -0,0 +1,8 @@
+-- Index supporting the result time listing of the resultTime extension.
+-- Distinct result times of a dataset as well as the latest result time
+-- (checked to invalidate cached listings) are read from the index instead
+-- of scanning all observations of the dataset.
+
+CREATE INDEX IF NOT EXISTS idx_observation_dataset_result_time ON observation (fk_dataset_id, result_time);
+
+ANALYZE observation;
@@ -0,0 +1,19 @@
+-- Trigram indexes supporting the ranked search on PostgreSQL
+-- (search.postgres.enabled=true). Substring (ilike) and similarity (%)
+-- matches on the name columns are answered by the GIN indexes instead of
+-- sequential scans.
+--
+-- Requires the pg_trgm extension (contrib), which has to be created by a
+-- user allowed to do so.
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX IF NOT EXISTS idx_category_name_trgm ON category USING gin (name gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_dataset_name_trgm ON dataset USING gin (name gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_feature_name_trgm ON feature USING gin (name gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_offering_name_trgm ON offering USING gin (name gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_phenomenon_name_trgm ON phenomenon USING gin (name gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_platform_name_trgm ON platform USING gin (name gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS idx_procedure_name_trgm ON "procedure" USING gin (name gin_trgm_ops);
+
+ANALYZE category, dataset, feature, offering, phenomenon, platform, "procedure";
@@ -28,17 +28,26 @@
  */
 package org.n52.io.extension.metadata;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 
 import org.hibernate.Criteria;
 import org.hibernate.Session;
-import org.hibernate.criterion.Disjunction;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 
+import com.google.common.collect.Iterables;
+
 public class DatabaseMetadataDao {
 
+    /**
+     * Keeps the number of bind parameters of the IN lists below common database limits.
+     */
+    private static final int MAX_IN_LIST_SIZE = 1000;
+
     private final Session session;
 
     public DatabaseMetadataDao(Session session) {
@@ -56,21 +65,24 @@ public class DatabaseMetadataDao {
         return (List<MetadataEntity< ? >>) criteria.list();
     }
 
+    /**
+     * Loads the metadata of all given datasets at once.
+     *
+     * @param ids
+     *        the dataset ids
+     * @return the metadata entities per dataset id, datasets without metadata are missing
+     */
     @SuppressWarnings("unchecked")
-    List<MetadataEntity< ? >> getSelected(Long id, Set<String> fields) {
-        Criteria criteria = session.createCriteria(MetadataEntity.class)
-                                   .add(Restrictions.eq(MetadataEntity.PROPERTY_SERIES_ID, id));
-        addCaseInsensitivePropertyMatch(criteria, fields);
-        return (List<MetadataEntity< ? >>) criteria.list();
-    }
-
-    private void addCaseInsensitivePropertyMatch(Criteria criteria, Set<String> fields) {
-        Disjunction disjunction = Restrictions.disjunction();
-        for (String field : fields) {
-            disjunction.add(Restrictions.eq(MetadataEntity.PROPERTY_NAME, field)
-                                        .ignoreCase());
+    public Map<Long, List<MetadataEntity< ? >>> getAllFor(Collection<Long> ids) {
+        Map<Long, List<MetadataEntity< ? >>> metadata = new HashMap<>();
+        for (List<Long> partition : Iterables.partition(ids, MAX_IN_LIST_SIZE)) {
+            Criteria criteria = session.createCriteria(MetadataEntity.class)
+                                       .add(Restrictions.in(MetadataEntity.PROPERTY_SERIES_ID, partition));
+            for (MetadataEntity< ? > entity : (List<MetadataEntity< ? >>) criteria.list()) {
+                metadata.computeIfAbsent(entity.getSeriesId(), id -> new ArrayList<>()).add(entity);
+            }
         }
-        criteria.add(disjunction);
+        return metadata;
     }
 
     @SuppressWarnings("unchecked")
@@ -40,9 +40,10 @@ public class DatabaseMetadataExtension extends MetadataExtension<ParameterOutput
 
     private static final String EXTENSION_NAME = "databaseMetadata";
 
-    @Autowired
     private MetadataRepository repository;
 
+    private Long cacheTtl;
+
     @Override
     public String getExtensionName() {
         return EXTENSION_NAME;
@@ -53,6 +54,46 @@ public class DatabaseMetadataExtension extends MetadataExtension<ParameterOutput
         return repository.getExtras(output, parameters);
     }
 
+    /**
+     * Loads the metadata of a whole collection of outputs at once, e.g. before decorating a listing.
+     *
+     * @param outputs
+     *        the outputs
+     * @param parameters
+     *        the query parameters
+     * @return the metadata per output id
+     */
+    public Map<String, Map<String, Object>> getExtras(Collection<? extends ParameterOutput> outputs,
+            IoParameters parameters) {
+        return repository.getExtras(outputs, parameters);
+    }
+
+    /**
+     * @param cacheTtl
+     *        the time (in seconds) metadata is cached per dataset, values &lt;= 0 disable caching
+     */
+    public void setCacheTtl(long cacheTtl) {
+        this.cacheTtl = cacheTtl;
+        if (repository != null) {
+            repository.setCacheTtl(cacheTtl);
+        }
+    }
+
+    /**
+     * Drops all cached metadata, e.g. after the metadata table has been changed.
+     */
+    public void invalidateCache() {
+        repository.invalidate();
+    }
+
+    @Autowired
+    void setRepository(MetadataRepository repository) {
+        this.repository = repository;
+        if (cacheTtl != null) {
+            repository.setCacheTtl(cacheTtl);
+        }
+    }
+
     @Override
     public Collection<String> getExtraMetadataFieldNames(ParameterOutput output) {
         return repository.getFieldNames(output.getId());
@@ -28,20 +28,78 @@
  */
 package org.n52.io.extension.metadata;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.hibernate.Session;
 import org.n52.io.request.IoParameters;
 import org.n52.io.response.ParameterOutput;
+import org.n52.io.response.dataset.DatasetOutput;
+import org.n52.io.response.dataset.TimeseriesMetadataOutput;
 import org.n52.series.db.da.SessionAwareRepository;
+import org.n52.series.srv.ListingListener;
 
-class MetadataRepository extends SessionAwareRepository {
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Loads (and caches) the database metadata of datasets. As a {@link ListingListener} the metadata of all
+ * datasets of a listing is loaded with a single query before the extension decorates the outputs one by one.
+ */
+class MetadataRepository extends SessionAwareRepository implements ListingListener {
+
+    private static final long DEFAULT_CACHE_TTL = 60;
+
+    private static final long DEFAULT_CACHE_SIZE = 10000;
+
+    private volatile Cache<Long, Map<String, Object>> cache = createCache(DEFAULT_CACHE_TTL, DEFAULT_CACHE_SIZE);
+
+    private volatile boolean caching = true;
+
+    /**
+     * @param cacheTtl
+     *        the time (in seconds) metadata is cached per dataset, values &lt;= 0 disable caching
+     */
+    void setCacheTtl(long cacheTtl) {
+        this.cache = createCache(cacheTtl, DEFAULT_CACHE_SIZE);
+        this.caching = cacheTtl > 0;
+    }
+
+    @Override
+    public void onListing(Collection<? extends ParameterOutput> outputs, IoParameters parameters) {
+        if (!caching) {
+            return;
+        }
+        List<Long> missing = new ArrayList<>();
+        for (ParameterOutput output : outputs) {
+            if (output instanceof DatasetOutput || output instanceof TimeseriesMetadataOutput) {
+                Long id = parseId(output.getId());
+                if (cache.getIfPresent(id) == null) {
+                    missing.add(id);
+                }
+            }
+        }
+        if (!missing.isEmpty()) {
+            load(missing);
+        }
+    }
+
+    void invalidate() {
+        cache.invalidateAll();
+    }
 
     List<String> getFieldNames(String id) {
+        Map<String, Object> cached = cache.getIfPresent(parseId(id));
+        if (cached != null) {
+            return new ArrayList<>(cached.keySet());
+        }
         Session session = getSession();
         try {
             DatabaseMetadataDao dao = new DatabaseMetadataDao(session);
@@ -52,18 +110,74 @@ class MetadataRepository extends SessionAwareRepository {
     }
 
     Map<String, Object> getExtras(ParameterOutput output, IoParameters parameters) {
+        return getExtras(Collections.singletonList(output), parameters)
+                .getOrDefault(output.getId(), Collections.emptyMap());
+    }
+
+    /**
+     * Loads the metadata of all given outputs. Metadata not cached yet is loaded with a single query.
+     *
+     * @param outputs
+     *        the outputs to load the metadata for
+     * @param parameters
+     *        the query parameters, selecting the fields to return
+     * @return the metadata per output id
+     */
+    Map<String, Map<String, Object>> getExtras(Collection<? extends ParameterOutput> outputs,
+            IoParameters parameters) {
+        Map<Long, Map<String, Object>> metadata = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        for (ParameterOutput output : outputs) {
+            Long id = parseId(output.getId());
+            Map<String, Object> cached = cache.getIfPresent(id);
+            if (cached != null) {
+                metadata.put(id, cached);
+            } else {
+                missing.add(id);
+            }
+        }
+        if (!missing.isEmpty()) {
+            metadata.putAll(load(missing));
+        }
+        Set<String> fields = parameters.getFields();
+        Map<String, Map<String, Object>> extras = new LinkedHashMap<>();
+        for (ParameterOutput output : outputs) {
+            Map<String, Object> all = metadata.getOrDefault(parseId(output.getId()), Collections.emptyMap());
+            extras.put(output.getId(), fields == null
+                    ? new HashMap<>(all)
+                    : select(all, fields));
+        }
+        return extras;
+    }
+
+    private Map<Long, Map<String, Object>> load(List<Long> ids) {
         Session session = getSession();
         try {
             DatabaseMetadataDao dao = new DatabaseMetadataDao(session);
-            final Set<String> fields = parameters.getFields();
-            return fields == null
-                ? convertToOutputs(dao.getAllFor(parseId(output.getId())))
-                : convertToOutputs(dao.getSelected(parseId(output.getId()), fields));
+            Map<Long, List<MetadataEntity< ? >>> entities = dao.getAllFor(ids);
+            Map<Long, Map<String, Object>> loaded = new HashMap<>();
+            for (Long id : ids) {
+                Map<String, Object> outputs = Collections.unmodifiableMap(convertToOutputs(entities.get(id)));
+                loaded.put(id, outputs);
+                cache.put(id, outputs);
+            }
+            return loaded;
         } finally {
             returnSession(session);
         }
     }
 
+    private Map<String, Object> select(Map<String, Object> all, Set<String> fields) {
+        Map<String, Object> selected = new HashMap<>();
+        for (Map.Entry<String, Object> entry : all.entrySet()) {
+            // field names are matched case insensitive
+            if (fields.stream().anyMatch(field -> field.equalsIgnoreCase(entry.getKey()))) {
+                selected.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return selected;
+    }
+
     private Map<String, Object> convertToOutputs(List<MetadataEntity< ? >> allInstances) {
         if (allInstances == null) {
             return Collections.emptyMap();
@@ -75,4 +189,11 @@ class MetadataRepository extends SessionAwareRepository {
         return outputs;
     }
 
+    private static Cache<Long, Map<String, Object>> createCache(long ttl, long size) {
+        return CacheBuilder.newBuilder()
+                           .expireAfterWrite(Math.max(0, ttl), TimeUnit.SECONDS)
+                           .maximumSize(ttl > 0 ? size : 0)
+                           .build();
+    }
+
 }
@@ -31,6 +31,7 @@ package org.n52.io.extension.parents;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -38,16 +39,14 @@ import java.util.stream.Collectors;
 import org.hibernate.Session;
 import org.n52.io.request.IoParameters;
 import org.n52.io.response.HierarchicalParameterOutput;
-import org.n52.io.response.PlatformOutput;
 import org.n52.io.response.ProcedureOutput;
-import org.n52.io.response.dataset.DatasetOutput;
 import org.n52.series.db.DataAccessException;
-import org.n52.series.db.beans.DatasetEntity;
 import org.n52.series.db.beans.ProcedureEntity;
 import org.n52.series.db.da.PlatformRepository;
 import org.n52.series.db.da.SessionAwareRepository;
-import org.n52.series.db.dao.DatasetDao;
 import org.n52.series.db.dao.DbQuery;
+import org.n52.series.db.dao.ProcedureDao;
+import org.n52.web.exception.ResourceNotFoundException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -69,14 +68,15 @@ class HierarchicalParameterRepository extends SessionAwareRepository {
             DbQuery dbQuery = getDbQuery(parameters);
             Map<String, Set<HierarchicalParameterOutput>> extras = new HashMap<>();
 
-            PlatformOutput platform = platformRepository.getInstance(platformId, dbQuery);
-            DatasetDao<DatasetEntity> dao = new DatasetDao<>(session);
-            for (DatasetOutput<?> dataset : platform.getDatasets()) {
-                String datasetId = dataset.getId();
-                DatasetEntity instance = dao.getInstance(Long.parseLong(datasetId), dbQuery);
-                addProcedureParents(instance, dbQuery, extras);
-                // TODO add further parents
+            List<ProcedureEntity> procedures = new ProcedureDao(session).getInstancesOfPlatform(
+                    Long.parseLong(platformId));
+            if (procedures.isEmpty() && !platformRepository.exists(platformId, dbQuery)) {
+                throw new ResourceNotFoundException("Resource with id '" + platformId + "' could not be found.");
             }
+            for (ProcedureEntity procedure : procedures) {
+                addProcedureParents(procedure, dbQuery, extras);
+            }
+            // TODO add further parents
 
             return extras;
         } catch (NumberFormatException e) {
@@ -90,12 +90,11 @@ class HierarchicalParameterRepository extends SessionAwareRepository {
         return Collections.emptyMap();
     }
 
-    private void addProcedureParents(DatasetEntity instance, DbQuery dbQuery,
+    private void addProcedureParents(ProcedureEntity entity, DbQuery dbQuery,
             Map<String, Set<HierarchicalParameterOutput>> extras) {
         if (!extras.containsKey(KEY_PROCEDURES)) {
             extras.put(KEY_PROCEDURES, new HashSet<>());
         }
-        ProcedureEntity entity = instance.getProcedure();
         extras.get(KEY_PROCEDURES).addAll(getProcedureParents(entity, dbQuery));
     }
 
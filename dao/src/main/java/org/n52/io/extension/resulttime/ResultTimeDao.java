@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2015-2021 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.io.extension.resulttime;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.hibernate.Criteria;
+import org.hibernate.Session;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.joda.time.Interval;
+import org.n52.series.db.beans.DataEntity;
+
+class ResultTimeDao {
+
+    private final Session session;
+
+    ResultTimeDao(Session session) {
+        this.session = session;
+    }
+
+    /**
+     * Selects the distinct result times of a dataset which differ from the sampling time (end). The result
+     * times are ordered ascending. If a limit is set, the latest result times are returned.
+     *
+     * @param datasetId
+     *        the dataset id
+     * @param interval
+     *        the interval result times have to be within, may be <code>null</code>
+     * @param limit
+     *        the maximum number of result times, values &lt;= 0 for no limit
+     * @return the distinct result times in ascending order
+     */
+    @SuppressWarnings("unchecked")
+    List<Date> getResultTimes(Long datasetId, Interval interval, int limit) {
+        Criteria criteria = createCriteria(datasetId)
+                .add(Restrictions.neProperty(DataEntity.PROPERTY_RESULT_TIME, DataEntity.PROPERTY_SAMPLING_TIME_END))
+                .setProjection(Projections.distinct(Projections.property(DataEntity.PROPERTY_RESULT_TIME)));
+        if (interval != null) {
+            criteria.add(Restrictions.between(DataEntity.PROPERTY_RESULT_TIME,
+                                              interval.getStart().toDate(),
+                                              interval.getEnd().toDate()));
+        }
+        if (limit <= 0) {
+            return criteria.addOrder(Order.asc(DataEntity.PROPERTY_RESULT_TIME))
+                           .list();
+        }
+        List<Date> latest = criteria.addOrder(Order.desc(DataEntity.PROPERTY_RESULT_TIME))
+                                    .setMaxResults(limit)
+                                    .list();
+        Collections.reverse(latest);
+        return latest;
+    }
+
+    /**
+     * @param datasetId
+     *        the dataset id
+     * @return the latest result time of the dataset, or <code>null</code> if the dataset has no data
+     */
+    Date getLatestResultTime(Long datasetId) {
+        return (Date) createCriteria(datasetId).setProjection(Projections.max(DataEntity.PROPERTY_RESULT_TIME))
+                                               .uniqueResult();
+    }
+
+    private Criteria createCriteria(Long datasetId) {
+        return session.createCriteria(DataEntity.class)
+                      .add(Restrictions.eq(DataEntity.PROPERTY_DATASET_ID, datasetId))
+                      .add(Restrictions.eq(DataEntity.PROPERTY_DELETED, Boolean.FALSE))
+                      .add(Restrictions.isNull(DataEntity.PROPERTY_PARENT));
+    }
+
+}
@@ -30,46 +30,71 @@ package org.n52.io.extension.resulttime;
 
 import java.util.Collections;
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
-import org.hibernate.Criteria;
 import org.hibernate.Session;
-import org.hibernate.criterion.Projections;
-import org.hibernate.criterion.Restrictions;
 import org.joda.time.DateTime;
+import org.joda.time.Interval;
 import org.n52.io.request.IoParameters;
-import org.n52.series.db.beans.DataEntity;
-import org.n52.series.db.beans.DatasetEntity;
+import org.n52.io.request.Parameters;
 import org.n52.series.db.da.SessionAwareRepository;
-import org.n52.series.db.dao.DataDao;
-import org.n52.series.db.dao.QueryUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 class ResultTimeRepository extends SessionAwareRepository {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ResultTimeRepository.class);
 
-    @SuppressWarnings("unchecked")
+    private static final long DEFAULT_CACHE_TTL = 300;
+
+    private static final long DEFAULT_CACHE_SIZE = 1000;
+
+    private volatile Cache<Long, ResultTimes> cache = createCache(DEFAULT_CACHE_TTL);
+
+    private volatile boolean caching = true;
+
+    /**
+     * @param cacheTtl
+     *        the time (in seconds) result times are cached per dataset, values &lt;= 0 disable caching
+     */
+    void setCacheTtl(long cacheTtl) {
+        this.caching = cacheTtl > 0;
+        this.cache = createCache(cacheTtl);
+    }
+
+    void invalidate(String datasetId) {
+        try {
+            cache.invalidate(Long.parseLong(datasetId));
+        } catch (NumberFormatException e) {
+            LOGGER.debug("Could not convert id '{}' to long.", datasetId, e);
+        }
+    }
+
+    void invalidateAll() {
+        cache.invalidateAll();
+    }
+
     Set<String> getExtras(String datasetId, IoParameters parameters) {
         Session session = getSession();
         try {
-            String alias = "datasets";
-            DataDao< ? > dao = new DataDao<>(session);
-            String datasetMember = QueryUtils.createAssociation(alias, DatasetEntity.PROPERTY_ID);
-            List<Date> resultTimes = dao.getDefaultCriteria(getDbQuery(parameters))
-                                        .add(Restrictions.neProperty(DataEntity.PROPERTY_RESULT_TIME,
-                                                                     DataEntity.PROPERTY_SAMPLING_TIME_END))
-                                        .setProjection(Projections.property(DataEntity.PROPERTY_RESULT_TIME))
-                                        .setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY)
-                                        .createCriteria(DataEntity.PROPERTY_DATASET, alias)
-                                        .add(Restrictions.eq(datasetMember, Long.parseLong(datasetId)))
-                                        .list();
+            Long id = Long.parseLong(datasetId);
+            ResultTimeDao dao = new ResultTimeDao(session);
+            Interval interval = getInterval(parameters);
+            int limit = getLimit(parameters);
+            List<Date> resultTimes = caching
+                    ? select(getCached(id, dao), interval, limit)
+                    : dao.getResultTimes(id, interval, limit);
             return resultTimes.stream()
                               .map(i -> new DateTime(i).toString())
-                              .collect(Collectors.toSet());
+                              .collect(Collectors.toCollection(LinkedHashSet::new));
         } catch (NumberFormatException e) {
             LOGGER.debug("Could not convert id '{}' to long.", datasetId, e);
         } finally {
@@ -78,4 +103,60 @@ class ResultTimeRepository extends SessionAwareRepository {
         return Collections.emptySet();
     }
 
+    private List<Date> getCached(Long id, ResultTimeDao dao) {
+        // checking the latest result time is cheap (index on dataset and result time)
+        // and tells whether new result times arrived since the entry was cached
+        Date latest = dao.getLatestResultTime(id);
+        ResultTimes cached = cache.getIfPresent(id);
+        if (cached == null || !Objects.equals(cached.latest, latest)) {
+            LOGGER.trace("Load result times of dataset '{}'", id);
+            cached = new ResultTimes(latest, Collections.unmodifiableList(dao.getResultTimes(id, null, 0)));
+            cache.put(id, cached);
+        }
+        return cached.resultTimes;
+    }
+
+    static List<Date> select(List<Date> resultTimes, Interval interval, int limit) {
+        List<Date> selected = interval == null
+                ? resultTimes
+                : resultTimes.stream()
+                             .filter(i -> !i.before(interval.getStart().toDate()))
+                             .filter(i -> !i.after(interval.getEnd().toDate()))
+                             .collect(Collectors.toList());
+        return limit > 0 && selected.size() > limit
+                ? selected.subList(selected.size() - limit, selected.size())
+                : selected;
+    }
+
+    private Interval getInterval(IoParameters parameters) {
+        return parameters.containsParameter(Parameters.TIMESPAN)
+                ? parameters.getTimespan().toInterval()
+                : null;
+    }
+
+    private int getLimit(IoParameters parameters) {
+        return parameters.containsParameter(Parameters.LIMIT)
+                ? parameters.getLimit()
+                : 0;
+    }
+
+    private static Cache<Long, ResultTimes> createCache(long ttl) {
+        return CacheBuilder.newBuilder()
+                           .expireAfterWrite(Math.max(0, ttl), TimeUnit.SECONDS)
+                           .maximumSize(ttl > 0 ? DEFAULT_CACHE_SIZE : 0)
+                           .build();
+    }
+
+    private static final class ResultTimes {
+
+        private final Date latest;
+
+        private final List<Date> resultTimes;
+
+        ResultTimes(Date latest, List<Date> resultTimes) {
+            this.latest = latest;
+            this.resultTimes = resultTimes;
+        }
+    }
+
 }
@@ -44,4 +44,29 @@ public class ResultTimeService {
         return repository.getExtras(datasetId, parameters);
     }
 
+    /**
+     * @param cacheTtl
+     *        the time (in seconds) result times are cached per dataset, values &lt;= 0 disable caching
+     */
+    public void setCacheTtl(long cacheTtl) {
+        repository.setCacheTtl(cacheTtl);
+    }
+
+    /**
+     * Drops the cached result times of a dataset, e.g. after older result times have been inserted.
+     *
+     * @param datasetId
+     *        the dataset id
+     */
+    public void invalidate(String datasetId) {
+        repository.invalidate(datasetId);
+    }
+
+    /**
+     * Drops the cached result times of all datasets.
+     */
+    public void invalidateAll() {
+        repository.invalidateAll();
+    }
+
 }
@@ -29,10 +29,10 @@
 package org.n52.series.db;
 
 import static java.util.stream.Collectors.joining;
-import static java.util.stream.Collectors.toSet;
 
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
@@ -48,22 +48,57 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
 
-
-public class AnnotationBasedDataRepositoryFactory implements DataRepositoryTypeFactory {
+/**
+ * Resolves data repositories by their {@link DataRepositoryComponent} type. The lookup table is built once
+ * the application context has been refreshed, so resolving a repository is a single map lookup. Until then
+ * the annotated beans are looked up from the context on each call.
+ */
+public class AnnotationBasedDataRepositoryFactory
+        implements DataRepositoryTypeFactory, ApplicationListener<ContextRefreshedEvent> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AnnotationBasedDataRepositoryFactory.class);
 
-    private final Map<String, ? super DataRepository<?, ?, ?, ?>> cache;
-
     private final ApplicationContext appContext;
 
+    private volatile Map<String, DataRepository<? extends DatasetEntity,
+                                                ? extends DataEntity<?>,
+                                                ? extends AbstractValue<?>, ?>> repositories;
+
     @Autowired
     public AnnotationBasedDataRepositoryFactory(ApplicationContext appContext) {
-        this.cache = new HashMap<>();
         this.appContext = appContext;
     }
 
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        repositories = createLookup();
+        LOGGER.debug("Registered data repositories for types: {}", repositories.keySet());
+    }
+
+    private Map<String, DataRepository<? extends DatasetEntity,
+                                       ? extends DataEntity<?>,
+                                       ? extends AbstractValue<?>, ?>> getLookup() {
+        Map<String, DataRepository<? extends DatasetEntity,
+                                   ? extends DataEntity<?>,
+                                   ? extends AbstractValue<?>, ?>> lookup = repositories;
+        return lookup != null
+                ? lookup
+                : createLookup();
+    }
+
+    private Map<String, DataRepository<? extends DatasetEntity,
+                                       ? extends DataEntity<?>,
+                                       ? extends AbstractValue<?>, ?>> createLookup() {
+        Map<String, DataRepository<? extends DatasetEntity,
+                                   ? extends DataEntity<?>,
+                                   ? extends AbstractValue<?>, ?>> lookup = new LinkedHashMap<>();
+        getAllDataAssemblers().forEach(assembler -> lookup.putIfAbsent(getDataType(assembler), assembler));
+        return Collections.unmodifiableMap(lookup);
+    }
+
     @SuppressWarnings("unchecked")
     private Stream<DataRepository<? extends DatasetEntity,
                                     ? extends DataEntity<?>,
@@ -77,8 +112,7 @@ public class AnnotationBasedDataRepositoryFactory implements DataRepositoryTypeF
 
     @Override
     public boolean isKnown(String observationType, String valueType) {
-        return hasCacheEntry(observationType, valueType) || getAllDataAssemblers().map(this::getDataType)
-                .filter(it -> it.equals(getType(observationType, valueType))).findFirst().isPresent();
+        return getLookup().containsKey(getType(observationType, valueType));
     }
 
     private String getType(String observationType, String valueType) {
@@ -92,13 +126,12 @@ public class AnnotationBasedDataRepositoryFactory implements DataRepositoryTypeF
                                     ? extends DataEntity<?>,
                                     ? extends AbstractValue<?>, ?>> findDataAssembler(
             String observationType, String valueType) {
-        return getAllDataAssemblers().filter(it -> getDataType(it).equals(getType(observationType, valueType)))
-                .findFirst();
+        return Optional.ofNullable(getLookup().get(getType(observationType, valueType)));
     }
 
     @Override
     public Set<String> getKnownTypes() {
-        return getAllDataAssemblers().map(this::getDataType).collect(toSet());
+        return getLookup().keySet();
     }
 
     private String getDataType(
@@ -113,16 +146,8 @@ public class AnnotationBasedDataRepositoryFactory implements DataRepositoryTypeF
             V extends AbstractValue<?>, T>
             DataRepository<S, E, V, T> create(
             String observationType, String valueType, Class<S> entityType) {
-        return (DataRepository<S, E, V, T>) addToCache(observationType, valueType,
-                findDataAssembler(observationType, valueType).orElseThrow(throwException(observationType, valueType)));
-    }
-
-    private <A extends DataRepository<? extends DatasetEntity,
-                                        ? extends DataEntity<?>,
-                                        ? extends AbstractValue<?>, ?>> A addToCache(
-            String observationType, String valueType, A assembler) {
-        cache.put(getType(observationType, valueType), assembler);
-        return assembler;
+        return (DataRepository<S, E, V, T>) findDataAssembler(observationType, valueType)
+                .orElseThrow(throwException(observationType, valueType));
     }
 
     private Supplier<? extends DataAccessException> throwException(String observationType, String valueType) {
@@ -138,7 +163,8 @@ public class AnnotationBasedDataRepositoryFactory implements DataRepositoryTypeF
 
     @Override
     public boolean hasCacheEntry(String observationType, String valueType) {
-        return cache.containsKey(getType(observationType, valueType));
+        Map<String, ?> lookup = repositories;
+        return lookup != null && lookup.containsKey(getType(observationType, valueType));
     }
 
 }
@@ -0,0 +1,373 @@
+/*
+ * Copyright (C) 2015-2021 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Isolates a class of work (e.g. data retrieval or metadata listings) by its own connection pool and
+ * executor. Work running on the bulkhead's executor (or via {@link #call(Callable)}) gets its connections
+ * from the bulkhead's pool, see {@link BulkheadDataSource}. Tasks exceeding the executor's queue run on the
+ * submitting thread, which slows down the submitter instead of failing its request. Saturation metrics are
+ * registered as MXBean <code>org.n52.series.db:type=Bulkhead,name=&lt;name&gt;</code>.
+ */
+public class Bulkhead implements BulkheadMXBean, Executor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(Bulkhead.class);
+
+    private static final ThreadLocal<Bulkhead> CURRENT = new ThreadLocal<>();
+
+    private static final int DEFAULT_QUEUE_SIZE = 100;
+
+    private final String name;
+
+    private final DataSource dataSource;
+
+    private final AtomicInteger activeConnections = new AtomicInteger();
+
+    private final AtomicInteger peakConnections = new AtomicInteger();
+
+    private final AtomicInteger waitingForConnection = new AtomicInteger();
+
+    private final AtomicLong rejectedTasks = new AtomicLong();
+
+    private final AtomicLong callerRunsTasks = new AtomicLong();
+
+    private ThreadPoolExecutor executor;
+
+    private ObjectName objectName;
+
+    private int threads;
+
+    private int queueSize = DEFAULT_QUEUE_SIZE;
+
+    private int maxConnections;
+
+    public Bulkhead(String name, DataSource dataSource) {
+        this.name = name;
+        this.dataSource = dataSource;
+    }
+
+    public void init() {
+        if (threads > 0) {
+            AtomicInteger count = new AtomicInteger();
+            executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                                              new ArrayBlockingQueue<>(Math.max(1, queueSize)),
+                                              runnable -> {
+                                                  Thread thread = new Thread(runnable,
+                                                          name + "-" + count.incrementAndGet());
+                                                  thread.setDaemon(true);
+                                                  return thread;
+                                              },
+                                              this::runOnCaller);
+        }
+        registerMetrics();
+    }
+
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        unregisterMetrics();
+    }
+
+    /**
+     * @param threads
+     *        the number of tasks executed in parallel, values &lt;= 0 execute tasks on the calling thread
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * @param queueSize
+     *        the number of tasks waiting for a thread before further tasks run on the submitting thread
+     */
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * @param maxConnections
+     *        the size of the bulkhead's connection pool, used to report its saturation
+     */
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * @return the bulkhead of the work running on the current thread, or <code>null</code>
+     */
+    public static Bulkhead current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Submits a task to the bulkhead's executor. Without executor the task is run on the calling thread.
+     *
+     * @param task
+     *        the task
+     * @param <T>
+     *        the result type
+     * @return the pending result
+     * @throws RejectedExecutionException
+     *         if the bulkhead has been shut down
+     */
+    public <T> Future<T> submit(Callable<T> task) {
+        if (executor == null) {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            try {
+                result.complete(call(task));
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+            return result;
+        }
+        return executor.submit(() -> call(task));
+    }
+
+    /**
+     * Executes a task on the bulkhead's executor (or the calling thread without executor). Unlike
+     * {@link #submit(Callable)} no future is created: callers like {@link CompletableFuture} track the task's
+     * outcome themselves.
+     *
+     * @param task
+     *        the task
+     * @throws RejectedExecutionException
+     *         if the bulkhead has been shut down
+     */
+    @Override
+    public void execute(Runnable task) {
+        Runnable inBulkhead = () -> {
+            Bulkhead previous = enter();
+            try {
+                task.run();
+            } finally {
+                leave(previous);
+            }
+        };
+        if (executor == null) {
+            inBulkhead.run();
+        } else {
+            executor.execute(inBulkhead);
+        }
+    }
+
+    /**
+     * Runs a task on the calling thread, taking connections from the bulkhead's pool.
+     *
+     * @param task
+     *        the task
+     * @param <T>
+     *        the result type
+     * @return the result of the task
+     * @throws Exception
+     *         if the task fails
+     */
+    public <T> T call(Callable<T> task) throws Exception {
+        Bulkhead previous = enter();
+        try {
+            return task.call();
+        } finally {
+            leave(previous);
+        }
+    }
+
+    private Bulkhead enter() {
+        Bulkhead previous = CURRENT.get();
+        CURRENT.set(this);
+        return previous;
+    }
+
+    private static void leave(Bulkhead previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    private void runOnCaller(Runnable task, ThreadPoolExecutor saturated) {
+        if (saturated.isShutdown()) {
+            rejectedTasks.incrementAndGet();
+            throw new RejectedExecutionException("Bulkhead '" + name + "' has been shut down.");
+        }
+        if (callerRunsTasks.getAndIncrement() == 0) {
+            LOGGER.warn("Bulkhead '{}' is saturated, running tasks on the submitting threads.", name);
+        }
+        task.run();
+    }
+
+    Connection getConnection() throws SQLException {
+        return acquire(dataSource::getConnection);
+    }
+
+    Connection getConnection(String username, String password) throws SQLException {
+        return acquire(() -> dataSource.getConnection(username, password));
+    }
+
+    private Connection acquire(ConnectionSource source) throws SQLException {
+        waitingForConnection.incrementAndGet();
+        Connection connection;
+        try {
+            connection = source.get();
+        } finally {
+            waitingForConnection.decrementAndGet();
+        }
+        peakConnections.accumulateAndGet(activeConnections.incrementAndGet(), Math::max);
+        AtomicBoolean closed = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                                                   new Class< ? >[] {Connection.class},
+                                                   (proxy, method, args) -> {
+            if ("close".equals(method.getName()) && closed.compareAndSet(false, true)) {
+                activeConnections.decrementAndGet();
+            }
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        });
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public int getActiveConnections() {
+        return activeConnections.get();
+    }
+
+    @Override
+    public int getPeakConnections() {
+        return peakConnections.get();
+    }
+
+    @Override
+    public int getWaitingForConnection() {
+        return waitingForConnection.get();
+    }
+
+    @Override
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    @Override
+    public double getConnectionSaturation() {
+        return maxConnections > 0
+                ? (double) activeConnections.get() / maxConnections
+                : -1;
+    }
+
+    @Override
+    public int getActiveTasks() {
+        return executor != null
+                ? executor.getActiveCount()
+                : 0;
+    }
+
+    @Override
+    public int getQueuedTasks() {
+        return executor != null
+                ? executor.getQueue().size()
+                : 0;
+    }
+
+    @Override
+    public int getThreads() {
+        return Math.max(0, threads);
+    }
+
+    @Override
+    public long getRejectedTasks() {
+        return rejectedTasks.get();
+    }
+
+    @Override
+    public long getCallerRunsTasks() {
+        return callerRunsTasks.get();
+    }
+
+    private void registerMetrics() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName candidate = new ObjectName("org.n52.series.db:type=Bulkhead,name=" + name);
+            if (!server.isRegistered(candidate)) {
+                server.registerMBean(this, candidate);
+                objectName = candidate;
+            }
+        } catch (JMException | RuntimeException e) {
+            LOGGER.info("Could not register metrics of bulkhead '{}'.", name, e);
+        }
+    }
+
+    private void unregisterMetrics() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException | RuntimeException e) {
+                LOGGER.debug("Could not unregister metrics of bulkhead '{}'.", name, e);
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface ConnectionSource {
+
+        Connection get() throws SQLException;
+
+    }
+
+}
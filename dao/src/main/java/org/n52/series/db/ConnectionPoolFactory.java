@@ -0,0 +1,322 @@
+/*
+ * Copyright (C) 2015-2021 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.PropertyAccessorFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Creates the connection pool of the configured type and exposes its metrics (see {@link ConnectionPoolMetrics}).
+ * Supported are <code>c3p0</code> and <code>hikari</code>. The pool implementations are only needed at
+ * runtime; settings are applied by their common bean property names.
+ */
+public class ConnectionPoolFactory implements FactoryBean<DataSource>, DisposableBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionPoolFactory.class);
+
+    private static final String C3P0 = "c3p0";
+
+    private static final String HIKARI = "hikari";
+
+    private static final String C3P0_CLASS = "com.mchange.v2.c3p0.ComboPooledDataSource";
+
+    private static final String HIKARI_CLASS = "com.zaxxer.hikari.HikariDataSource";
+
+    private String name = "series";
+
+    private String type = C3P0;
+
+    private String jdbcUrl;
+
+    private String user;
+
+    private String password;
+
+    private String driverClass;
+
+    private int maxPoolSize = 15;
+
+    private int minIdle = 3;
+
+    private long maxIdleTime = 300;
+
+    private long maxLifetime = 1800;
+
+    private long connectionTimeout = 30000;
+
+    private int statementCacheSize = 250;
+
+    private boolean readOnly;
+
+    private DataSource pool;
+
+    private DataSource dataSource;
+
+    private ConnectionPoolMetrics metrics;
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @param type
+     *        the pool implementation, either <code>c3p0</code> or <code>hikari</code>
+     */
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public void setJdbcUrl(String jdbcUrl) {
+        this.jdbcUrl = jdbcUrl;
+    }
+
+    public void setUser(String user) {
+        this.user = user;
+    }
+
+    public void setPassword(String password) {
+        this.password = password;
+    }
+
+    public void setDriverClass(String driverClass) {
+        this.driverClass = driverClass;
+    }
+
+    public void setMaxPoolSize(int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    public void setMinIdle(int minIdle) {
+        this.minIdle = minIdle;
+    }
+
+    /**
+     * @param maxIdleTime
+     *        the time (in seconds) surplus connections may stay idle before they get closed
+     */
+    public void setMaxIdleTime(long maxIdleTime) {
+        this.maxIdleTime = maxIdleTime;
+    }
+
+    /**
+     * @param maxLifetime
+     *        the time (in seconds) after which connections get replaced
+     */
+    public void setMaxLifetime(long maxLifetime) {
+        this.maxLifetime = maxLifetime;
+    }
+
+    /**
+     * @param connectionTimeout
+     *        the time (in ms) to wait for a connection before failing
+     */
+    public void setConnectionTimeout(long connectionTimeout) {
+        this.connectionTimeout = connectionTimeout;
+    }
+
+    /**
+     * @param statementCacheSize
+     *        the number of prepared statements cached per connection, 0 disables caching
+     */
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    /**
+     * @param readOnly
+     *        if connections are flagged read-only (see {@link ReadOnlyDataSource}). The PostgreSQL driver
+     *        ignores the flag in autocommit mode unless its <code>readOnlyMode</code> is <code>always</code>,
+     *        which gets set as driver property then.
+     */
+    public void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Creates a factory for a pool of a replica, configured like this pool except for its url.
+     *
+     * @param index
+     *        the number of the replica, used to name the pool
+     * @param replicaUrl
+     *        the JDBC url of the replica
+     * @return the factory of the replica's pool
+     */
+    ConnectionPoolFactory createReplica(int index, String replicaUrl) {
+        ConnectionPoolFactory replica = new ConnectionPoolFactory();
+        replica.name = name + "-replica" + index;
+        replica.type = type;
+        replica.jdbcUrl = replicaUrl;
+        replica.user = user;
+        replica.password = password;
+        replica.driverClass = driverClass;
+        replica.maxPoolSize = maxPoolSize;
+        replica.minIdle = minIdle;
+        replica.maxIdleTime = maxIdleTime;
+        replica.maxLifetime = maxLifetime;
+        replica.connectionTimeout = connectionTimeout;
+        replica.statementCacheSize = statementCacheSize;
+        replica.readOnly = readOnly;
+        return replica;
+    }
+
+    @Override
+    public synchronized DataSource getObject() throws Exception {
+        if (dataSource == null) {
+            LOGGER.debug("Create '{}' connection pool '{}'", type, name);
+            metrics = new ConnectionPoolMetrics(name, type);
+            pool = createPool();
+            metrics.register(pool);
+            // c3p0 has no hook to time checkouts, unlike Hikari's metrics tracker
+            dataSource = C3P0.equals(type)
+                    ? metrics.createTimedDataSource(pool)
+                    : pool;
+        }
+        return dataSource;
+    }
+
+    @Override
+    public Class<?> getObjectType() {
+        return DataSource.class;
+    }
+
+    @Override
+    public synchronized void destroy() throws Exception {
+        if (dataSource != null) {
+            metrics.unregister();
+            if (pool instanceof AutoCloseable) {
+                ((AutoCloseable) pool).close();
+            }
+            pool = null;
+            dataSource = null;
+            metrics = null;
+        }
+    }
+
+    private DataSource createPool() throws ClassNotFoundException {
+        if (HIKARI.equals(type)) {
+            return createHikari();
+        } else if (C3P0.equals(type)) {
+            return createC3p0();
+        }
+        throw new IllegalArgumentException("Unknown connection pool type '" + type + "'.");
+    }
+
+    private DataSource createC3p0() throws ClassNotFoundException {
+        DataSource pool = instantiate(C3P0_CLASS);
+        BeanWrapper properties = PropertyAccessorFactory.forBeanPropertyAccess(pool);
+        properties.setPropertyValue("dataSourceName", name);
+        properties.setPropertyValue("jdbcUrl", jdbcUrl);
+        // driver properties first, c3p0 keeps user and password in them
+        properties.setPropertyValue("properties", createReadOnlyProperties());
+        properties.setPropertyValue("user", user);
+        properties.setPropertyValue("password", password);
+        properties.setPropertyValue("driverClass", driverClass);
+        properties.setPropertyValue("maxPoolSize", maxPoolSize);
+        properties.setPropertyValue("minPoolSize", Math.min(minIdle, maxPoolSize));
+        properties.setPropertyValue("initialPoolSize", Math.min(minIdle, maxPoolSize));
+        properties.setPropertyValue("maxIdleTimeExcessConnections", (int) maxIdleTime);
+        properties.setPropertyValue("maxConnectionAge", (int) maxLifetime);
+        properties.setPropertyValue("checkoutTimeout", (int) connectionTimeout);
+        properties.setPropertyValue("maxStatementsPerConnection", statementCacheSize);
+        // auto reconnect
+        properties.setPropertyValue("acquireRetryAttempts", 0);
+        properties.setPropertyValue("acquireRetryDelay", 10000);
+        properties.setPropertyValue("idleConnectionTestPeriod", 30);
+        properties.setPropertyValue("preferredTestQuery", "values(1)");
+        return pool;
+    }
+
+    private DataSource createHikari() throws ClassNotFoundException {
+        DataSource pool = instantiate(HIKARI_CLASS);
+        BeanWrapper properties = PropertyAccessorFactory.forBeanPropertyAccess(pool);
+        properties.setPropertyValue("poolName", name);
+        properties.setPropertyValue("jdbcUrl", jdbcUrl);
+        properties.setPropertyValue("username", user);
+        properties.setPropertyValue("password", password);
+        properties.setPropertyValue("driverClassName", driverClass);
+        properties.setPropertyValue("maximumPoolSize", maxPoolSize);
+        properties.setPropertyValue("minimumIdle", Math.min(minIdle, maxPoolSize));
+        properties.setPropertyValue("idleTimeout", TimeUnit.SECONDS.toMillis(maxIdleTime));
+        properties.setPropertyValue("maxLifetime", TimeUnit.SECONDS.toMillis(maxLifetime));
+        properties.setPropertyValue("connectionTimeout", connectionTimeout);
+        // keep the pool from failing at startup, like c3p0 does while the database is not reachable
+        properties.setPropertyValue("initializationFailTimeout", -1L);
+        Properties dataSourceProperties = createStatementCacheProperties();
+        dataSourceProperties.putAll(createReadOnlyProperties());
+        properties.setPropertyValue("dataSourceProperties", dataSourceProperties);
+        properties.setPropertyValue("metricsTrackerFactory",
+                                    metrics.createHikariTrackerFactory(getClass().getClassLoader()));
+        return pool;
+    }
+
+    /**
+     * Hikari leaves statement caching to the driver.
+     */
+    private Properties createStatementCacheProperties() {
+        Properties properties = new Properties();
+        if (jdbcUrl != null && jdbcUrl.startsWith("jdbc:postgresql:")) {
+            properties.setProperty("prepareThreshold", statementCacheSize > 0 ? "3" : "0");
+            properties.setProperty("preparedStatementCacheQueries", Integer.toString(statementCacheSize));
+        } else if (jdbcUrl != null && jdbcUrl.startsWith("jdbc:mysql:")) {
+            properties.setProperty("cachePrepStmts", Boolean.toString(statementCacheSize > 0));
+            properties.setProperty("prepStmtCacheSize", Integer.toString(statementCacheSize));
+            properties.setProperty("useServerPrepStmts", "true");
+        }
+        return properties;
+    }
+
+    /**
+     * PgJDBC's default <code>readOnlyMode=transaction</code> ignores read-only connections in autocommit mode,
+     * in which all reads run.
+     */
+    private Properties createReadOnlyProperties() {
+        Properties properties = new Properties();
+        if (readOnly && jdbcUrl != null && jdbcUrl.startsWith("jdbc:postgresql:")) {
+            properties.setProperty("readOnlyMode", "always");
+        }
+        return properties;
+    }
+
+    private DataSource instantiate(String className) throws ClassNotFoundException {
+        Class<?> poolClass = ClassUtils.forName(className, getClass().getClassLoader());
+        return (DataSource) BeanUtils.instantiateClass(poolClass);
+    }
+
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2015-2021 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db;
+
+/**
+ * Metrics of a connection pool created by {@link ConnectionPoolFactory}, exposed via JMX. Values a pool does not
+ * provide are reported as -1: hold times are only recorded for Hikari pools, acquire times for Hikari and c3p0
+ * pools.
+ * <p>
+ * The lifetime (age) of physical connections is not available: neither pool exposes when its connections were
+ * opened. Connections get replaced after the configured <code>maxLifetime</code> at the latest.
+ */
+public interface ConnectionPoolMXBean {
+
+    String getName();
+
+    String getType();
+
+    long getAcquired();
+
+    double getAverageAcquireMillis();
+
+    long getMaxAcquireMillis();
+
+    /**
+     * @return the connection requests which timed out (Hikari), or the failed checkouts (c3p0)
+     */
+    long getTimeouts();
+
+    int getActiveConnections();
+
+    int getIdleConnections();
+
+    int getTotalConnections();
+
+    int getThreadsAwaitingConnection();
+
+    /**
+     * @return the average time (in ms) connections were held by callers (checkout to return, not the lifetime
+     *         of the physical connection)
+     */
+    double getAverageHoldMillis();
+
+    long getMaxHoldMillis();
+
+    /**
+     * Resets acquire and hold time statistics as well as the timeouts.
+     */
+    void reset();
+
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright (C) 2015-2021 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Exposes the metrics of a connection pool created by {@link ConnectionPoolFactory} as MXBean
+ * <code>org.n52.series.db:type=ConnectionPool,name=&lt;name&gt;</code>. Connections are handed out by the pool
+ * unwrapped: connection counts and c3p0's failed checkouts are read from the pool's own MXBean (Hikari's
+ * <code>HikariPoolMXBean</code>, c3p0's <code>PooledDataSource</code>). Acquire latency, timeouts and usage
+ * times of Hikari pools are recorded by Hikari's metrics tracker hook, see
+ * {@link #createHikariTrackerFactory(ClassLoader)}. The acquire latency of c3p0 pools is recorded by a thin
+ * data source timing <code>getConnection()</code>, see {@link #createTimedDataSource(DataSource)}; hold times
+ * would need a proxy around each connection and are not recorded for c3p0.
+ */
+public class ConnectionPoolMetrics implements ConnectionPoolMXBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConnectionPoolMetrics.class);
+
+    private static final String HIKARI_TRACKER_FACTORY = "com.zaxxer.hikari.metrics.MetricsTrackerFactory";
+
+    private static final String HIKARI_TRACKER = "com.zaxxer.hikari.metrics.IMetricsTracker";
+
+    private final String name;
+
+    private final String type;
+
+    private final AtomicLong acquired = new AtomicLong();
+
+    private final AtomicLong acquireNanos = new AtomicLong();
+
+    private final AtomicLong maxAcquireNanos = new AtomicLong();
+
+    private final AtomicLong timeouts = new AtomicLong();
+
+    private final AtomicLong released = new AtomicLong();
+
+    private final AtomicLong usageMillis = new AtomicLong();
+
+    private final AtomicLong maxUsageMillis = new AtomicLong();
+
+    // acquire and hold times, timeouts reported by Hikari's tracker
+    private volatile boolean tracked;
+
+    // acquire times recorded by a timed data source
+    private volatile boolean timed;
+
+    private volatile long failedCheckoutsOffset;
+
+    private DataSource pool;
+
+    private ObjectName objectName;
+
+    ConnectionPoolMetrics(String name, String type) {
+        this.name = name;
+        this.type = type;
+    }
+
+    /**
+     * Creates a <code>MetricsTrackerFactory</code> to be set on a Hikari pool, which reports acquire
+     * latency, timeouts and usage times to these metrics.
+     *
+     * @param classLoader
+     *        the class loader of the Hikari classes
+     * @return the tracker factory
+     * @throws ClassNotFoundException
+     *         if Hikari is not available
+     */
+    Object createHikariTrackerFactory(ClassLoader classLoader) throws ClassNotFoundException {
+        Object tracker = createProxy(ClassUtils.forName(HIKARI_TRACKER, classLoader), (method, args) -> {
+            record(method.getName(), args);
+            return null;
+        });
+        Object factory = createProxy(ClassUtils.forName(HIKARI_TRACKER_FACTORY, classLoader),
+            (method, args) -> "create".equals(method.getName())
+                    ? tracker
+                    : null);
+        tracked = true;
+        return factory;
+    }
+
+    /**
+     * Wraps a pool to record the time each <code>getConnection()</code> call takes as acquire latency. Only
+     * the call is delegated, connections are returned as handed out by the pool.
+     *
+     * @param dataSource
+     *        the pool
+     * @return the timed data source
+     */
+    DataSource createTimedDataSource(DataSource dataSource) {
+        timed = true;
+        return new DelegatingDataSource(dataSource) {
+
+            @Override
+            public Connection getConnection() throws SQLException {
+                long start = System.nanoTime();
+                Connection connection = super.getConnection();
+                recordAcquired(System.nanoTime() - start);
+                return connection;
+            }
+
+            @Override
+            public Connection getConnection(String username, String password) throws SQLException {
+                long start = System.nanoTime();
+                Connection connection = super.getConnection(username, password);
+                recordAcquired(System.nanoTime() - start);
+                return connection;
+            }
+        };
+    }
+
+    void register(DataSource dataSource) {
+        this.pool = dataSource;
+        try {
+            ObjectName candidate = new ObjectName("org.n52.series.db:type=ConnectionPool,name=" + name);
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(candidate)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(this, candidate);
+                objectName = candidate;
+            }
+        } catch (JMException | RuntimeException e) {
+            LOGGER.info("Could not register metrics of connection pool '{}'.", name, e);
+        }
+    }
+
+    void unregister() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException | RuntimeException e) {
+                LOGGER.debug("Could not unregister metrics of connection pool '{}'.", name, e);
+            }
+        }
+    }
+
+    private void record(String event, Object[] args) {
+        if ("recordConnectionAcquiredNanos".equals(event)) {
+            recordAcquired((Long) args[0]);
+        } else if ("recordConnectionUsageMillis".equals(event)) {
+            long millis = (Long) args[0];
+            released.incrementAndGet();
+            usageMillis.addAndGet(millis);
+            maxUsageMillis.accumulateAndGet(millis, Math::max);
+        } else if ("recordConnectionTimeout".equals(event)) {
+            timeouts.incrementAndGet();
+        }
+    }
+
+    private void recordAcquired(long nanos) {
+        acquired.incrementAndGet();
+        acquireNanos.addAndGet(nanos);
+        maxAcquireNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String getType() {
+        return type;
+    }
+
+    @Override
+    public long getAcquired() {
+        return tracked || timed
+                ? acquired.get()
+                : -1;
+    }
+
+    @Override
+    public double getAverageAcquireMillis() {
+        if (!tracked && !timed) {
+            return -1;
+        }
+        long count = acquired.get();
+        return count > 0
+                ? (double) TimeUnit.NANOSECONDS.toMicros(acquireNanos.get()) / count / 1000
+                : 0;
+    }
+
+    @Override
+    public long getMaxAcquireMillis() {
+        return tracked || timed
+                ? TimeUnit.NANOSECONDS.toMillis(maxAcquireNanos.get())
+                : -1;
+    }
+
+    @Override
+    public long getTimeouts() {
+        if (tracked) {
+            return timeouts.get();
+        }
+        long failedCheckouts = readPool(null, "getNumFailedCheckoutsDefaultUser");
+        return failedCheckouts >= 0
+                ? failedCheckouts - failedCheckoutsOffset
+                : -1;
+    }
+
+    @Override
+    public int getActiveConnections() {
+        return (int) readPool("getActiveConnections", "getNumBusyConnectionsDefaultUser");
+    }
+
+    @Override
+    public int getIdleConnections() {
+        return (int) readPool("getIdleConnections", "getNumIdleConnectionsDefaultUser");
+    }
+
+    @Override
+    public int getTotalConnections() {
+        return (int) readPool("getTotalConnections", "getNumConnectionsDefaultUser");
+    }
+
+    @Override
+    public int getThreadsAwaitingConnection() {
+        return (int) readPool("getThreadsAwaitingConnection", "getNumThreadsAwaitingCheckoutDefaultUser");
+    }
+
+    @Override
+    public double getAverageHoldMillis() {
+        if (!tracked) {
+            return -1;
+        }
+        long count = released.get();
+        return count > 0
+                ? (double) usageMillis.get() / count
+                : 0;
+    }
+
+    @Override
+    public long getMaxHoldMillis() {
+        return tracked
+                ? maxUsageMillis.get()
+                : -1;
+    }
+
+    @Override
+    public void reset() {
+        acquired.set(0);
+        acquireNanos.set(0);
+        maxAcquireNanos.set(0);
+        timeouts.set(0);
+        released.set(0);
+        usageMillis.set(0);
+        maxUsageMillis.set(0);
+        failedCheckoutsOffset = Math.max(0, readPool(null, "getNumFailedCheckoutsDefaultUser"));
+    }
+
+    /**
+     * Reads a value from the pool's MXBean: <code>HikariDataSource.getHikariPoolMXBean()</code> (not available
+     * before the pool has been started) or the c3p0 pool itself.
+     */
+    private long readPool(String hikariMethod, String c3p0Method) {
+        Object hikariPool = invoke(pool, "getHikariPoolMXBean");
+        Object value = hikariPool != null
+                ? invoke(hikariPool, hikariMethod)
+                : invoke(pool, c3p0Method);
+        return value instanceof Number
+                ? ((Number) value).longValue()
+                : -1;
+    }
+
+    private static Object invoke(Object target, String methodName) {
+        if (target == null || methodName == null) {
+            return null;
+        }
+        try {
+            Method method = target.getClass().getMethod(methodName);
+            return method.invoke(target);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static Object createProxy(Class<?> type, Handler handler) {
+        return Proxy.newProxyInstance(type.getClassLoader(), new Class< ? >[] {type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return type.getSimpleName();
+                }
+            }
+            return handler.handle(method, args);
+        });
+    }
+
+    @FunctionalInterface
+    private interface Handler {
+
+        Object handle(Method method, Object[] args);
+
+    }
+
+}
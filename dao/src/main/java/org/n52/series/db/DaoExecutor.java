@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2015-2021 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes blocking DAO work fanned out by a single request, e.g. data of multiple datasets, searches over
+ * all resource types or counts of multiple entities. Tasks shall be JDBC work using their own session (sessions
+ * are not thread-safe), in-memory work like mapping entities to outputs does not belong here as it would hold
+ * permits other requests wait for. If virtual threads are enabled each task gets its own virtual thread (on JVMs
+ * without virtual threads tasks run on a bounded pool of platform threads instead). In both cases the number
+ * of tasks running at the same time is limited by a semaphore which should match the size of the connection
+ * pool, so raising concurrency does not oversubscribe the database. If virtual threads are disabled no
+ * threads are created at all: fan-out is off and submitted tasks run on the calling thread.
+ * <p>
+ * Tasks run in the {@link Bulkhead} of the submitting thread, so they take their connections from the same
+ * pool. Tasks should be submitted via {@link #submit(Callable)} if the caller may cancel them, as the
+ * returned futures interrupt running tasks.
+ */
+public class DaoExecutor implements Executor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DaoExecutor.class);
+
+    private static final int DEFAULT_MAX_CONCURRENCY = 15;
+
+    private ExecutorService executor;
+
+    private Semaphore permits;
+
+    private boolean virtualThreads;
+
+    private boolean virtual;
+
+    private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+
+    public void init() {
+        int concurrency = Math.max(1, maxConcurrency);
+        permits = new Semaphore(concurrency, true);
+        if (!virtualThreads) {
+            LOGGER.debug("Fan-out of DAO work disabled, tasks run on the calling thread.");
+            return;
+        }
+        executor = createVirtualThreadExecutor();
+        virtual = executor != null;
+        if (executor == null) {
+            AtomicInteger count = new AtomicInteger();
+            executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+                Thread thread = new Thread(runnable, "dao-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        LOGGER.debug("Execute fan-out DAO work on {} threads, at most {} at a time.",
+                virtual ? "virtual" : "platform", concurrency);
+    }
+
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @param virtualThreads
+     *        <code>true</code> to fan out work of a request to virtual threads (requires Java 21+, falls back
+     *        to a bounded pool of platform threads otherwise), <code>false</code> keeps the former behaviour
+     */
+    public void setVirtualThreads(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * @param maxConcurrency
+     *        the number of tasks running at the same time, should not exceed the connection pool size
+     */
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * @return <code>true</code> if fan-out work shall be executed by this executor
+     */
+    public boolean isFanOut() {
+        return executor != null;
+    }
+
+    /**
+     * @return <code>true</code> if tasks run on virtual threads
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * Submits a task. The task waits for a free permit on its own thread, so submitting never blocks. If
+     * fan-out is disabled, the task runs on the calling thread.
+     *
+     * @param task
+     *        the task
+     * @param <T>
+     *        the result type
+     * @return the pending result
+     */
+    public <T> Future<T> submit(Callable<T> task) {
+        if (executor == null) {
+            CompletableFuture<T> result = new CompletableFuture<>();
+            try {
+                result.complete(limit(task).call());
+            } catch (Exception e) {
+                result.completeExceptionally(e);
+            }
+            return result;
+        }
+        return executor.submit(limit(task));
+    }
+
+    /**
+     * Executes a task, on the calling thread if fan-out is disabled.
+     *
+     * @param task
+     *        the task
+     */
+    @Override
+    public void execute(Runnable task) {
+        if (executor == null) {
+            runLimited(task);
+        } else {
+            executor.execute(() -> runLimited(task));
+        }
+    }
+
+    private void runLimited(Runnable task) {
+        try {
+            limit(Executors.callable(task)).call();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("DAO task failed.", e);
+        }
+    }
+
+    /**
+     * Applies the given function to all items concurrently.
+     *
+     * @param items
+     *        the items
+     * @param function
+     *        the function to apply
+     * @param <T>
+     *        the item type
+     * @param <R>
+     *        the result type
+     * @return the results in order of the items
+     */
+    public <T, R> List<R> map(Collection<T> items, Function<T, R> function) {
+        List<Future<R>> results = new ArrayList<>(items.size());
+        for (T item : items) {
+            results.add(submit(() -> function.apply(item)));
+        }
+        List<R> values = new ArrayList<>(results.size());
+        for (Future<R> result : results) {
+            values.add(getResult(result, results));
+        }
+        return values;
+    }
+
+    private <T> Callable<T> limit(Callable<T> task) {
+        Bulkhead bulkhead = Bulkhead.current();
+        return () -> {
+            permits.acquire();
+            try {
+                return bulkhead != null
+                        ? bulkhead.call(task)
+                        : task.call();
+            } finally {
+                permits.release();
+            }
+        };
+    }
+
+    private static <R> R getResult(Future<R> result, List<Future<R>> all) {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            all.forEach(pending -> pending.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for DAO task.", e);
+        } catch (ExecutionException e) {
+            all.forEach(pending -> pending.cancel(true));
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("DAO task failed.", cause);
+        }
+    }
+
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.info("Virtual threads are not available on this JVM, using a bounded thread pool instead.");
+            return null;
+        }
+    }
+
+}
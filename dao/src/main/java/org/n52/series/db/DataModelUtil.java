@@ -28,81 +28,128 @@
  */
 package org.n52.series.db;
 
-import java.util.stream.Collectors;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import javax.persistence.EntityManagerFactory;
-import javax.persistence.metamodel.EntityType;
 
 import org.hibernate.Criteria;
 import org.hibernate.Session;
-import org.hibernate.engine.spi.NamedQueryDefinition;
-import org.hibernate.engine.spi.NamedSQLQueryDefinition;
+import org.hibernate.engine.spi.QueryParameters;
 import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.hibernate.engine.spi.SharedSessionContractImplementor;
 import org.hibernate.internal.CriteriaImpl;
-import org.hibernate.internal.SessionImpl;
 import org.hibernate.loader.criteria.CriteriaJoinWalker;
 import org.hibernate.loader.criteria.CriteriaQueryTranslator;
 import org.hibernate.persister.entity.OuterJoinLoadable;
+import org.hibernate.type.Type;
 
 public final class DataModelUtil {
 
+    private static final String SQL_EXPLAIN = "EXPLAIN ";
+
+    private static final Pattern PLAN_ROWS = Pattern.compile("rows=(\\d+)");
+
     public static boolean isPropertyNameSupported(String property, Class<?> clazz, Session session) {
-        return hasProperty(property, session.getEntityManagerFactory().getMetamodel().entity(clazz));
+        return getCapabilities(session).isPropertyNameSupported(property, clazz);
     }
 
-    private static boolean hasProperty(String property, EntityType<?> entityType) {
-        return entityType.getAttributes().stream().map(a -> a.getName()).collect(Collectors.toSet())
-                .contains(property);
+    public static boolean isNamedQuerySupported(String namedQuery, Session session) {
+        return getCapabilities(session).isNamedQuerySupported(namedQuery);
     }
 
-    public static boolean isNamedQuerySupported(String namedQuery, Session session) {
-        SessionFactoryImplementor factory = getSessionFactory(session);
-        NamedQueryDefinition namedQueryDef = factory.getNamedQuery(namedQuery);
-        NamedSQLQueryDefinition namedSQLQueryDef =
-                factory.getNamedSQLQuery(namedQuery);
-        return namedQueryDef != null || namedSQLQueryDef != null;
+    public static boolean isPostgreSQL(Session session) {
+        return getCapabilities(session).isPostgreSQL();
+    }
+
+    public static String getTableName(Class<?> clazz, Session session) {
+        return getCapabilities(session).getTableName(clazz);
+    }
+
+    public static SchemaCapabilities.CollectionTable getCollectionTable(Class<?> clazz, String property,
+            Session session) {
+        return getCapabilities(session).getCollectionTable(clazz, property);
     }
 
-    private static SessionFactoryImplementor getSessionFactory(Session session) {
-        return ((SessionImpl) session).getSessionFactory();
+    private static SchemaCapabilities getCapabilities(Session session) {
+        return SchemaCapabilities.of(session.getSessionFactory());
     }
 
     public static String getSqlString(Criteria criteria) {
         CriteriaImpl criteriaImpl = (CriteriaImpl) criteria;
+        CriteriaQueryTranslator translator = createTranslator(criteriaImpl);
+        return createJoinWalker(criteriaImpl, translator).getSQLString();
+    }
+
+    /**
+     * Estimates the number of rows the given criteria would return from the query plan of the database
+     * instead of executing it. The estimate takes all restrictions (and subqueries) of the criteria into
+     * account. Supported on PostgreSQL only.
+     *
+     * @param criteria
+     *        the criteria to estimate
+     * @param session
+     *        the session the criteria was created from
+     * @return the estimated number of rows, or {@code null} if no estimate is available
+     */
+    public static Long getEstimatedRowCount(Criteria criteria, Session session) {
+        if (!isPostgreSQL(session)) {
+            return null;
+        }
+        CriteriaImpl criteriaImpl = (CriteriaImpl) criteria;
+        SharedSessionContractImplementor implementor = criteriaImpl.getSession();
+        CriteriaQueryTranslator translator = createTranslator(criteriaImpl);
+        String sql = createJoinWalker(criteriaImpl, translator).getSQLString();
+        QueryParameters parameters = translator.getQueryParameters();
+        Object[] values = parameters.getPositionalParameterValues();
+        Type[] types = parameters.getPositionalParameterTypes();
+        return session.doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(SQL_EXPLAIN + sql)) {
+                int index = 1;
+                for (int i = 0; i < values.length; i++) {
+                    types[i].nullSafeSet(statement, values[i], index, implementor);
+                    index += types[i].getColumnSpan(implementor.getFactory());
+                }
+                try (ResultSet result = statement.executeQuery()) {
+                    // the first line of the plan holds the estimate of the outermost node
+                    Matcher matcher = result.next() ? PLAN_ROWS.matcher(result.getString(1)) : null;
+                    return matcher != null && matcher.find() ? Long.valueOf(matcher.group(1)) : null;
+                }
+            }
+        });
+    }
+
+    private static CriteriaQueryTranslator createTranslator(CriteriaImpl criteriaImpl) {
+        return new CriteriaQueryTranslator(criteriaImpl.getSession().getFactory(),
+                                           criteriaImpl,
+                                           criteriaImpl.getEntityOrClassName(),
+                                           CriteriaQueryTranslator.ROOT_SQL_ALIAS);
+    }
+
+    private static CriteriaJoinWalker createJoinWalker(CriteriaImpl criteriaImpl,
+                                                       CriteriaQueryTranslator translator) {
         SharedSessionContractImplementor session = criteriaImpl.getSession();
-        SessionFactoryImplementor factory = extractSessionFactory(criteria);
-        CriteriaQueryTranslator translator = new CriteriaQueryTranslator(factory,
-                                                                         criteriaImpl,
-                                                                         criteriaImpl.getEntityOrClassName(),
-                                                                         CriteriaQueryTranslator.ROOT_SQL_ALIAS);
+        SessionFactoryImplementor factory = session.getFactory();
         String[] implementors = factory.getMetamodel().getImplementors(criteriaImpl.getEntityOrClassName());
 
         OuterJoinLoadable joinLoader = (OuterJoinLoadable) factory.getMetamodel().entityPersister(implementors[0]);
-        CriteriaJoinWalker walker = new CriteriaJoinWalker(joinLoader,
-                                                           translator,
-                                                           factory,
-                                                           criteriaImpl,
-                                                           criteriaImpl.getEntityOrClassName(),
-                                                           session.getLoadQueryInfluencers());
-
-        return walker.getSQLString();
+        return new CriteriaJoinWalker(joinLoader,
+                                      translator,
+                                      factory,
+                                      criteriaImpl,
+                                      criteriaImpl.getEntityOrClassName(),
+                                      session.getLoadQueryInfluencers());
     }
 
     public static boolean isEntitySupported(Class< ? > clazz, Session session) {
-        return session != null ? isEntitySupported(clazz, session.getEntityManagerFactory()) : false;
+        return session != null ? getCapabilities(session).isEntitySupported(clazz) : false;
     }
 
     public static boolean isEntitySupported(Class< ? > clazz, Criteria criteria) {
-        return criteria != null ? isEntitySupported(clazz, extractSessionFactory(criteria)) : false;
-    }
-
-    private static boolean isEntitySupported(Class<?> clazz, EntityManagerFactory factory) {
-        if (factory != null && clazz != null) {
-            return factory.getMetamodel().getEntities().stream().filter(e -> e.getJavaType().equals(clazz)).findFirst()
-                    .isPresent();
-        }
-        return false;
+        SessionFactoryImplementor factory = criteria != null ? extractSessionFactory(criteria) : null;
+        return factory != null ? SchemaCapabilities.of(factory).isEntitySupported(clazz) : false;
     }
 
     public static EntityManagerFactory extractEntityManagerFactory(Criteria criteria) {
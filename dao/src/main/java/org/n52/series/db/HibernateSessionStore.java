@@ -36,6 +36,13 @@ public interface HibernateSessionStore {
 
     void returnSession(Session session);
 
+    /**
+     * @return whether bulk reads shall use a stateless session opened on the connection of the regular session
+     */
+    default boolean isStatelessReads() {
+        return false;
+    }
+
     void shutdown();
 
 }
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2015-2021 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.Criteria;
+
+/**
+ * Deadline of the work running on the current thread. Queries created while a deadline is set get the
+ * remaining time as JDBC query timeout, so the database (not only the waiting caller) gives up on statements
+ * running beyond the deadline and their connections return to the pool. Interrupting a thread blocked in a
+ * JDBC call does not stop the statement.
+ */
+public final class QueryDeadline {
+
+    private static final ThreadLocal<Long> CURRENT = new ThreadLocal<>();
+
+    private QueryDeadline() {
+    }
+
+    /**
+     * Runs the task with the given deadline.
+     *
+     * @param <T>
+     *        the result type
+     * @param deadline
+     *        the deadline as {@link System#nanoTime()} value
+     * @param task
+     *        the task
+     * @return the result of the task
+     * @throws Exception
+     *         if the task fails
+     */
+    public static <T> T call(long deadline, Callable<T> task) throws Exception {
+        Long previous = CURRENT.get();
+        CURRENT.set(deadline);
+        try {
+            return task.call();
+        } finally {
+            if (previous == null) {
+                CURRENT.remove();
+            } else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    /**
+     * @return the seconds left until the deadline of the current thread (at least one, JDBC timeouts have
+     *         a granularity of seconds and zero means no timeout), or <code>null</code> without deadline
+     */
+    public static Integer remainingSeconds() {
+        Long deadline = CURRENT.get();
+        if (deadline == null) {
+            return null;
+        }
+        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        return (int) Math.max(1, (remaining + 999) / 1000);
+    }
+
+    /**
+     * Sets the remaining time as query timeout of the criteria if the current thread has a deadline.
+     *
+     * @param criteria
+     *        the criteria
+     * @return the criteria
+     */
+    public static Criteria applyTo(Criteria criteria) {
+        Integer seconds = remainingSeconds();
+        return seconds != null
+                ? criteria.setTimeout(seconds)
+                : criteria;
+    }
+
+}
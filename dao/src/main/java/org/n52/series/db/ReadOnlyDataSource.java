@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2015-2021 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+/**
+ * Flags connections read-only, so the database (and driver) can apply its read-only optimizations. Pools
+ * reset the flag when connections are returned, so it is applied on each checkout.
+ * <p>
+ * Reads run in autocommit mode, where the PostgreSQL driver only sends the flag with
+ * <code>readOnlyMode=always</code>. {@link ConnectionPoolFactory#setReadOnly(boolean)} sets this driver
+ * property, pools created otherwise have to set it themselves.
+ */
+public class ReadOnlyDataSource extends DelegatingDataSource {
+
+    private boolean readOnly = true;
+
+    public ReadOnlyDataSource(DataSource targetDataSource) {
+        super(targetDataSource);
+    }
+
+    public void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return prepare(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return prepare(super.getConnection(username, password));
+    }
+
+    private Connection prepare(Connection connection) throws SQLException {
+        if (readOnly && !connection.isReadOnly()) {
+            connection.setReadOnly(true);
+        }
+        return connection;
+    }
+
+}
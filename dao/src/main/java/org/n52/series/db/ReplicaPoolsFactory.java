@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2015-2021 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.FactoryBean;
+
+/**
+ * Creates the connection pools of read replicas (see {@link ReplicaRoutingDataSource}) from a comma separated
+ * list of JDBC urls. Each pool is configured like the given template pool, so replicas can be set up by
+ * properties alone (<code>series.database.replicas.urls</code>).
+ */
+public class ReplicaPoolsFactory implements FactoryBean<List<DataSource>>, DisposableBean {
+
+    private final ConnectionPoolFactory template;
+
+    private final List<ConnectionPoolFactory> pools = new ArrayList<>();
+
+    private List<String> urls = Collections.emptyList();
+
+    private List<DataSource> dataSources;
+
+    public ReplicaPoolsFactory(ConnectionPoolFactory template) {
+        this.template = template;
+    }
+
+    /**
+     * @param urls
+     *        the comma separated JDBC urls of the replicas, empty if there are none
+     */
+    public void setUrls(String urls) {
+        List<String> values = new ArrayList<>();
+        if (urls != null) {
+            for (String url : urls.split(",")) {
+                if (!url.trim().isEmpty()) {
+                    values.add(url.trim());
+                }
+            }
+        }
+        this.urls = values;
+    }
+
+    @Override
+    public synchronized List<DataSource> getObject() throws Exception {
+        if (dataSources == null) {
+            List<DataSource> replicas = new ArrayList<>(urls.size());
+            for (int i = 0; i < urls.size(); i++) {
+                ConnectionPoolFactory pool = template.createReplica(i + 1, urls.get(i));
+                pools.add(pool);
+                replicas.add(pool.getObject());
+            }
+            dataSources = Collections.unmodifiableList(replicas);
+        }
+        return dataSources;
+    }
+
+    @Override
+    public Class<?> getObjectType() {
+        return List.class;
+    }
+
+    @Override
+    public synchronized void destroy() throws Exception {
+        for (ConnectionPoolFactory pool : pools) {
+            pool.destroy();
+        }
+        pools.clear();
+        dataSources = null;
+    }
+
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright (C) 2015-2021 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+/**
+ * Routes connections to a set of read replicas. Replicas are balanced round-robin or by the least number of
+ * open connections. A background health check takes replicas out of rotation which are not reachable or lag
+ * behind the primary more than the configured maximum. Connections fall back to the primary if no replica
+ * is available (or none is configured).
+ * <p>
+ * Unless a lag query is configured, the lag of PostgreSQL replicas is queried with the functions of the
+ * replica's server version (<code>pg_last_wal_*</code> since 10, <code>pg_last_xlog_*</code> before). The lag
+ * of other databases is not checked without a lag query.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private static final String ROUND_ROBIN = "round-robin";
+
+    private static final String LEAST_CONNECTIONS = "least-connections";
+
+    private static final long DEFAULT_HEALTH_CHECK_INTERVAL = 10;
+
+    private static final int VALIDATION_TIMEOUT = 5;
+
+    private static final String POSTGRESQL = "PostgreSQL";
+
+    /**
+     * Replication lag (in seconds) of a PostgreSQL 10+ standby, 0 if all received WAL has been replayed.
+     */
+    private static final String POSTGRESQL_LAG_QUERY = "SELECT CASE"
+            + " WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0"
+            + " ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0) END";
+
+    /**
+     * The same for standbys before PostgreSQL 10, which named WAL locations <code>xlog</code>.
+     */
+    private static final String LEGACY_POSTGRESQL_LAG_QUERY = "SELECT CASE"
+            + " WHEN pg_last_xlog_receive_location() = pg_last_xlog_replay_location() THEN 0"
+            + " ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0) END";
+
+    private final DataSource primary;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final AtomicBoolean usingPrimary = new AtomicBoolean();
+
+    private final AtomicBoolean unknownLagReported = new AtomicBoolean();
+
+    private List<Replica> replicas = Collections.emptyList();
+
+    private ScheduledExecutorService healthCheck;
+
+    private String balancing = ROUND_ROBIN;
+
+    private long healthCheckInterval = DEFAULT_HEALTH_CHECK_INTERVAL;
+
+    private long maxReplicationLag;
+
+    private String lagQuery;
+
+    public ReplicaRoutingDataSource(DataSource primary) {
+        this.primary = primary;
+    }
+
+    public void init() {
+        if (!replicas.isEmpty()) {
+            checkReplicas();
+            if (healthCheckInterval > 0) {
+                healthCheck = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "replica-health-check");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                healthCheck.scheduleWithFixedDelay(this::checkReplicas,
+                                                   healthCheckInterval,
+                                                   healthCheckInterval,
+                                                   TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    public void shutdown() {
+        if (healthCheck != null) {
+            healthCheck.shutdownNow();
+        }
+    }
+
+    public void setReplicas(List<DataSource> replicas) {
+        this.replicas = replicas.stream()
+                                .map(Replica::new)
+                                .collect(Collectors.toList());
+    }
+
+    /**
+     * @param balancing
+     *        either <code>round-robin</code> or <code>least-connections</code>
+     */
+    public void setBalancing(String balancing) {
+        if (!ROUND_ROBIN.equals(balancing) && !LEAST_CONNECTIONS.equals(balancing)) {
+            throw new IllegalArgumentException("Unknown replica balancing '" + balancing + "'.");
+        }
+        this.balancing = balancing;
+    }
+
+    /**
+     * @param healthCheckInterval
+     *        the interval (in seconds) to check the replicas, values &lt;= 0 check them once at startup only
+     */
+    public void setHealthCheckInterval(long healthCheckInterval) {
+        this.healthCheckInterval = healthCheckInterval;
+    }
+
+    /**
+     * @param maxReplicationLag
+     *        the replication lag (in seconds) a replica may have, values &lt;= 0 ignore the lag
+     */
+    public void setMaxReplicationLag(long maxReplicationLag) {
+        this.maxReplicationLag = maxReplicationLag;
+    }
+
+    /**
+     * @param lagQuery
+     *        a query returning the replication lag of a replica (in seconds) as single number, if empty the
+     *        query is chosen by the replica's database (PostgreSQL only)
+     */
+    public void setLagQuery(String lagQuery) {
+        this.lagQuery = lagQuery;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        Replica replica = select();
+        return replica != null
+                ? replica.track(replica.dataSource.getConnection())
+                : primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        Replica replica = select();
+        return replica != null
+                ? replica.track(replica.dataSource.getConnection(username, password))
+                : primary.getConnection(username, password);
+    }
+
+    private Replica select() {
+        List<Replica> available = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) {
+            if (replica.healthy) {
+                available.add(replica);
+            }
+        }
+        if (available.isEmpty()) {
+            if (!replicas.isEmpty() && usingPrimary.compareAndSet(false, true)) {
+                LOGGER.warn("No replica available, routing connections to the primary.");
+            }
+            return null;
+        }
+        if (usingPrimary.compareAndSet(true, false)) {
+            LOGGER.info("Replicas available again, routing connections to {} replica(s).", available.size());
+        }
+        return LEAST_CONNECTIONS.equals(balancing)
+                ? available.stream()
+                           .min(Comparator.comparingInt(replica -> replica.open.get()))
+                           .get()
+                : available.get(Math.floorMod(next.getAndIncrement(), available.size()));
+    }
+
+    private void checkReplicas() {
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get(i);
+            boolean healthy = check(replica, i);
+            if (healthy != replica.healthy) {
+                LOGGER.info("Replica #{} is {}.", i, healthy ? "available again" : "taken out of rotation");
+            }
+            replica.healthy = healthy;
+        }
+    }
+
+    private boolean check(Replica replica, int index) {
+        try (Connection connection = replica.dataSource.getConnection()) {
+            if (!connection.isValid(VALIDATION_TIMEOUT)) {
+                return false;
+            }
+            if (maxReplicationLag <= 0) {
+                return true;
+            }
+            String query = lagQuery != null && !lagQuery.isEmpty()
+                    ? lagQuery
+                    : getLagQuery(connection.getMetaData());
+            if (query == null) {
+                return true;
+            }
+            try (Statement statement = connection.createStatement();
+                    ResultSet result = statement.executeQuery(query)) {
+                double lag = result.next() ? result.getDouble(1) : 0;
+                LOGGER.trace("Replica #{} lags {} s behind the primary.", index, lag);
+                return lag <= maxReplicationLag;
+            }
+        } catch (SQLException | RuntimeException e) {
+            LOGGER.debug("Health check of replica #{} failed.", index, e);
+            return false;
+        }
+    }
+
+    private String getLagQuery(DatabaseMetaData metadata) throws SQLException {
+        String product = metadata.getDatabaseProductName();
+        if (POSTGRESQL.equalsIgnoreCase(product)) {
+            return metadata.getDatabaseMajorVersion() >= 10
+                    ? POSTGRESQL_LAG_QUERY
+                    : LEGACY_POSTGRESQL_LAG_QUERY;
+        }
+        if (unknownLagReported.compareAndSet(false, true)) {
+            LOGGER.warn("Replication lag of '{}' replicas is not checked, configure a lag query.", product);
+        }
+        return null;
+    }
+
+    private static final class Replica {
+
+        private final DataSource dataSource;
+
+        private final AtomicInteger open = new AtomicInteger();
+
+        private volatile boolean healthy = true;
+
+        Replica(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        /**
+         * Counts the connection as open until it gets closed.
+         */
+        Connection track(Connection connection) {
+            open.incrementAndGet();
+            AtomicBoolean closed = new AtomicBoolean();
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                                                       new Class< ? >[] {Connection.class},
+                                                       (proxy, method, args) -> {
+                if ("close".equals(method.getName()) && closed.compareAndSet(false, true)) {
+                    open.decrementAndGet();
+                }
+                return invoke(connection, method, args);
+            });
+        }
+
+        private static Object invoke(Connection connection, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(connection, args);
+            } catch (InvocationTargetException e) {
+                throw e.getTargetException();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) 2015-2021 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Shares one session between all repositories taking part in a unit of work, e.g. a servlet request. Units
+ * of work are bound to the current thread and can be nested; the session is returned to the wrapped store
+ * once the outermost unit of work ends. Outside of a unit of work (e.g. background tasks or worker threads)
+ * each call is passed to the wrapped store.
+ * <p>
+ * The shared session is bound to the {@link Bulkhead} it was opened in, as its connection comes from that
+ * bulkhead's pool. Work running in another bulkhead on the same thread (e.g. data tasks run on the request
+ * thread when the data bulkhead's queue is full) gets its own session from the wrapped store, so it uses a
+ * connection of its own bulkhead.
+ * <p>
+ * If a leak detection threshold is set, sessions held longer than the threshold are logged together with
+ * the stack trace of the code which borrowed them.
+ */
+public class RequestScopedSessionStore implements HibernateSessionStore {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RequestScopedSessionStore.class);
+
+    private final HibernateSessionStore delegate;
+
+    private final ThreadLocal<UnitOfWork> current = new ThreadLocal<>();
+
+    private final Map<Session, Borrow> borrowed = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService leakDetector;
+
+    private boolean enabled;
+
+    private long leakDetectionThreshold;
+
+    public RequestScopedSessionStore(HibernateSessionStore delegate) {
+        this.delegate = delegate;
+    }
+
+    public void init() {
+        if (leakDetectionThreshold > 0) {
+            leakDetector = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "session-leak-detector");
+                thread.setDaemon(true);
+                return thread;
+            });
+            leakDetector.scheduleWithFixedDelay(this::detectLeaks,
+                                                leakDetectionThreshold,
+                                                leakDetectionThreshold,
+                                                TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param leakDetectionThreshold
+     *        the time (in ms) a session may be held before it is reported as possible leak, values &lt;= 0
+     *        disable leak detection
+     */
+    public void setLeakDetectionThreshold(long leakDetectionThreshold) {
+        this.leakDetectionThreshold = leakDetectionThreshold;
+    }
+
+    /**
+     * Begins a unit of work on the current thread. Sessions requested until the returned unit of work gets
+     * closed are shared. Has no effect if request scoped sessions are disabled.
+     *
+     * @return the unit of work to close when done
+     */
+    public UnitOfWork begin() {
+        if (!enabled) {
+            return () -> {
+                // nothing to end
+            };
+        }
+        UnitOfWork unitOfWork = current.get();
+        if (unitOfWork == null) {
+            SharedSession shared = new SharedSession();
+            current.set(shared);
+            return shared;
+        }
+        return ((SharedSession) unitOfWork).nest();
+    }
+
+    /**
+     * @return {@code true} if a unit of work is active on the current thread
+     */
+    public boolean isActive() {
+        return current.get() != null;
+    }
+
+    @Override
+    public Session getSession() {
+        SharedSession shared = (SharedSession) current.get();
+        return shared != null && shared.isShareable()
+                ? shared.borrow()
+                : track(delegate.getSession());
+    }
+
+    @Override
+    public void returnSession(Session session) {
+        SharedSession shared = (SharedSession) current.get();
+        if (shared != null && shared.owns(session)) {
+            shared.giveBack();
+        } else {
+            release(session);
+        }
+    }
+
+    @Override
+    public boolean isStatelessReads() {
+        return delegate.isStatelessReads();
+    }
+
+    @Override
+    public void shutdown() {
+        if (leakDetector != null) {
+            leakDetector.shutdownNow();
+        }
+        delegate.shutdown();
+    }
+
+    private Session track(Session session) {
+        if (leakDetectionThreshold > 0 && session != null) {
+            borrowed.put(session, new Borrow());
+        }
+        return session;
+    }
+
+    private void release(Session session) {
+        if (session != null) {
+            borrowed.remove(session);
+        }
+        delegate.returnSession(session);
+    }
+
+    private void detectLeaks() {
+        long now = System.currentTimeMillis();
+        for (Borrow borrow : borrowed.values()) {
+            long held = now - borrow.since;
+            if (held > leakDetectionThreshold && !borrow.reported) {
+                borrow.reported = true;
+                LOGGER.warn("Session held by thread '{}' for {} ms, possible leak.", borrow.thread, held,
+                            borrow.origin);
+            }
+        }
+    }
+
+    /**
+     * A unit of work sharing one session. Closing it ends the unit of work.
+     */
+    @FunctionalInterface
+    public interface UnitOfWork extends AutoCloseable {
+
+        @Override
+        void close();
+
+    }
+
+    private final class SharedSession implements UnitOfWork {
+
+        private Session session;
+
+        private Bulkhead bulkhead;
+
+        private int depth = 1;
+
+        private int open;
+
+        SharedSession nest() {
+            depth++;
+            return this;
+        }
+
+        Session borrow() {
+            if (session != null && !session.isOpen()) {
+                // closed by someone else: untrack it, borrowers still holding
+                // it return it through the non-shared path
+                release(session);
+                session = null;
+                open = 0;
+            }
+            if (session == null) {
+                session = track(delegate.getSession());
+                bulkhead = Bulkhead.current();
+            }
+            open++;
+            return session;
+        }
+
+        /**
+         * @return if the session can be shared with the current thread's work, i.e. it has not been opened
+         *         yet or the work runs in the bulkhead the session was opened in
+         */
+        boolean isShareable() {
+            return session == null || !session.isOpen() || bulkhead == Bulkhead.current();
+        }
+
+        boolean owns(Session other) {
+            return session != null && session == other;
+        }
+
+        void giveBack() {
+            open--;
+        }
+
+        @Override
+        public void close() {
+            if (--depth > 0) {
+                return;
+            }
+            current.remove();
+            if (open > 0) {
+                LOGGER.warn("Unit of work ended with {} session(s) not returned.", open);
+            }
+            if (session != null) {
+                release(session);
+                session = null;
+                bulkhead = null;
+            }
+        }
+    }
+
+    private static final class Borrow {
+
+        private final long since = System.currentTimeMillis();
+
+        private final String thread = Thread.currentThread().getName();
+
+        private final Throwable origin = new Throwable("Session borrowed here");
+
+        private volatile boolean reported;
+
+    }
+
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2015-2021 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.EntityType;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.dialect.PostgreSQL81Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.collection.AbstractCollectionPersister;
+import org.hibernate.persister.collection.CollectionPersister;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Immutable description of what the mapped data model supports: the mapped entities, their properties and
+ * tables, the named queries and whether the database is a PostgreSQL. Capabilities are computed once per
+ * session factory (see {@link SeriesLocalSessionFactoryBean}), so checks on the request path are plain
+ * lookups instead of walks through the metamodel.
+ */
+public final class SchemaCapabilities {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SchemaCapabilities.class);
+
+    private static final Map<SessionFactory, SchemaCapabilities> REGISTRY = new ConcurrentHashMap<>();
+
+    private final Map<Class<?>, Set<String>> properties;
+
+    private final Map<Class<?>, String> tableNames;
+
+    private final Map<String, Boolean> namedQueries = new ConcurrentHashMap<>();
+
+    private final Map<String, Optional<CollectionTable>> collectionTables = new ConcurrentHashMap<>();
+
+    private final SessionFactoryImplementor factory;
+
+    private final boolean postgreSQL;
+
+    private SchemaCapabilities(SessionFactoryImplementor factory) {
+        this.factory = factory;
+        Map<Class<?>, Set<String>> entityProperties = new HashMap<>();
+        Map<Class<?>, String> entityTables = new HashMap<>();
+        for (EntityType<?> entity : factory.getMetamodel().getEntities()) {
+            Class<?> clazz = entity.getJavaType();
+            if (clazz != null) {
+                Set<String> names = new HashSet<>();
+                for (Attribute<?, ?> attribute : entity.getAttributes()) {
+                    names.add(attribute.getName());
+                }
+                entityProperties.put(clazz, Collections.unmodifiableSet(names));
+                String tableName = getTableName(clazz, factory);
+                if (tableName != null) {
+                    entityTables.put(clazz, tableName);
+                }
+            }
+        }
+        this.properties = Collections.unmodifiableMap(entityProperties);
+        this.tableNames = Collections.unmodifiableMap(entityTables);
+        this.postgreSQL = factory.getJdbcServices().getDialect() instanceof PostgreSQL81Dialect;
+    }
+
+    /**
+     * Computes and registers the capabilities of the given session factory.
+     *
+     * @param factory
+     *        the session factory
+     * @return the capabilities
+     */
+    public static SchemaCapabilities register(SessionFactory factory) {
+        SchemaCapabilities capabilities = new SchemaCapabilities((SessionFactoryImplementor) factory);
+        REGISTRY.put(factory, capabilities);
+        LOGGER.debug("Registered schema capabilities: {} entities, PostgreSQL: {}",
+                capabilities.properties.size(), capabilities.postgreSQL);
+        return capabilities;
+    }
+
+    public static void unregister(SessionFactory factory) {
+        if (factory != null) {
+            REGISTRY.remove(factory);
+        }
+    }
+
+    /**
+     * @param factory
+     *        the session factory
+     * @return the capabilities of the given factory, computed on first access if the factory has not been
+     *         registered
+     */
+    public static SchemaCapabilities of(SessionFactory factory) {
+        return REGISTRY.computeIfAbsent(factory, f -> new SchemaCapabilities((SessionFactoryImplementor) f));
+    }
+
+    public boolean isEntitySupported(Class<?> clazz) {
+        return clazz != null && properties.containsKey(clazz);
+    }
+
+    public boolean isPropertyNameSupported(String property, Class<?> clazz) {
+        return properties.getOrDefault(clazz, Collections.emptySet()).contains(property);
+    }
+
+    /**
+     * Named queries can not be listed from the factory, so they are resolved once on first access. The set
+     * of named queries does not change after the factory has been built.
+     *
+     * @param namedQuery
+     *        the name of the query
+     * @return {@code true} if a named HQL or SQL query with the given name is mapped
+     */
+    public boolean isNamedQuerySupported(String namedQuery) {
+        return namedQueries.computeIfAbsent(namedQuery, name -> factory.getNamedQuery(name) != null
+                || factory.getNamedSQLQuery(name) != null);
+    }
+
+    public boolean isPostgreSQL() {
+        return postgreSQL;
+    }
+
+    public String getTableName(Class<?> clazz) {
+        return tableNames.get(clazz);
+    }
+
+    /**
+     * @param clazz
+     *        the entity type
+     * @param property
+     *        the collection property
+     * @return the join table the collection is mapped to, or {@code null} if the collection is not mapped to
+     *         a join table
+     */
+    public CollectionTable getCollectionTable(Class<?> clazz, String property) {
+        return collectionTables.computeIfAbsent(clazz.getName() + "." + property,
+                key -> Optional.ofNullable(findCollectionTable(clazz, property))).orElse(null);
+    }
+
+    private CollectionTable findCollectionTable(Class<?> clazz, String property) {
+        for (CollectionPersister persister : factory.getMetamodel().collectionPersisters().values()) {
+            Class<?> owner = persister.getOwnerEntityPersister().getMappedClass();
+            if (persister.getRole().endsWith("." + property)
+                    && owner.isAssignableFrom(clazz)
+                    && !persister.isOneToMany()
+                    && persister instanceof AbstractCollectionPersister) {
+                AbstractCollectionPersister collection = (AbstractCollectionPersister) persister;
+                return new CollectionTable(collection.getTableName(),
+                                           collection.getKeyColumnNames()[0],
+                                           collection.getElementColumnNames()[0]);
+            }
+        }
+        return null;
+    }
+
+    private static String getTableName(Class<?> clazz, SessionFactoryImplementor factory) {
+        try {
+            EntityPersister persister = factory.getMetamodel().entityPersister(clazz);
+            return persister instanceof AbstractEntityPersister
+                    ? ((AbstractEntityPersister) persister).getTableName()
+                    : null;
+        } catch (RuntimeException e) {
+            LOGGER.trace("No persister for {}", clazz, e);
+            return null;
+        }
+    }
+
+    /**
+     * Join table of a collection mapping.
+     */
+    public static final class CollectionTable {
+
+        private final String table;
+
+        private final String keyColumn;
+
+        private final String elementColumn;
+
+        CollectionTable(String table, String keyColumn, String elementColumn) {
+            this.table = table;
+            this.keyColumn = keyColumn;
+            this.elementColumn = elementColumn;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        /**
+         * @return the column referencing the owner of the collection
+         */
+        public String getKeyColumn() {
+            return keyColumn;
+        }
+
+        /**
+         * @return the column referencing the collection elements
+         */
+        public String getElementColumn() {
+            return elementColumn;
+        }
+    }
+
+}
@@ -45,11 +45,32 @@ public class SeriesHibernateSessionHolder implements HibernateSessionStore {
     @Autowired
     private SessionFactory seriesSessionFactory;
 
+    private boolean statelessReads;
+
+    private boolean readOnly;
+
+    /**
+     * @param readOnly
+     *        whether sessions load entities read-only (no snapshots for dirty checking) and never flush
+     */
+    public void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * @param statelessReads
+     *        whether to serve bulk reads (e.g. observation data) from stateless sessions
+     */
+    public void setStatelessReads(boolean statelessReads) {
+        this.statelessReads = statelessReads;
+    }
+
     @Override
     public Session getSession() {
          Session session = seriesSessionFactory.openSession();
          if (session != null && session.isOpen()) {
-             session.setHibernateFlushMode(FlushMode.COMMIT);
+             session.setHibernateFlushMode(readOnly ? FlushMode.MANUAL : FlushMode.COMMIT);
+             session.setDefaultReadOnly(readOnly);
              session.setCacheMode(CacheMode.IGNORE);
              session.clear();
          }
@@ -64,6 +85,11 @@ public class SeriesHibernateSessionHolder implements HibernateSessionStore {
         }
     }
 
+    @Override
+    public boolean isStatelessReads() {
+        return statelessReads;
+    }
+
     @Override
     public void shutdown() {
         LOGGER.info("Closing '{}'", getClass().getSimpleName());
@@ -49,7 +49,15 @@ public class SeriesLocalSessionFactoryBean extends LocalSessionFactoryBean {
     protected SessionFactory buildSessionFactory(LocalSessionFactoryBuilder sfb) {
         Properties properties = sfb.getProperties();
         sfb.registerTypeOverride(createZonalTimestampType(properties));
-        return super.buildSessionFactory(sfb);
+        SessionFactory sessionFactory = super.buildSessionFactory(sfb);
+        SchemaCapabilities.register(sessionFactory);
+        return sessionFactory;
+    }
+
+    @Override
+    public void destroy() {
+        SchemaCapabilities.unregister(getObject());
+        super.destroy();
     }
 
     private ZonalTimestampType createZonalTimestampType(Properties properties) {
@@ -30,10 +30,15 @@ package org.n52.series.db.da;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 import org.hibernate.Hibernate;
 import org.hibernate.Session;
+import org.hibernate.StatelessSession;
 import org.hibernate.proxy.HibernateProxy;
 import org.joda.time.DateTime;
 import org.joda.time.Interval;
@@ -50,6 +55,7 @@ import org.n52.series.db.beans.parameter.ParameterEntity;
 import org.n52.series.db.dao.DataDao;
 import org.n52.series.db.dao.DatasetDao;
 import org.n52.series.db.dao.DbQuery;
+import org.n52.series.db.dao.StatelessDataDao;
 
 public abstract class AbstractDataRepository<S extends DatasetEntity,
                                              E extends DataEntity<T>,
@@ -76,6 +82,33 @@ public abstract class AbstractDataRepository<S extends DatasetEntity,
         }
     }
 
+    @Override
+    public Map<String, Data<V>> getDataByResultTime(String datasetId, DbQuery dbQuery) {
+        Session session = getSession();
+        try {
+            Map<Date, List<E>> observations =
+                    createDataDao(session).getAllInstancesByResultTime(Long.parseLong(datasetId), dbQuery);
+            Map<String, Data<V>> result = new LinkedHashMap<>();
+            for (Map.Entry<Date, List<E>> entry : observations.entrySet()) {
+                result.put(new DateTime(entry.getKey()).toString(), assembleData(entry.getValue(), dbQuery));
+            }
+            return result;
+        } finally {
+            returnSession(session);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    protected Data<V> assembleData(List<E> observations, DbQuery query) {
+        Data<V> result = new Data<>();
+        observations.stream()
+                    .filter(Objects::nonNull)
+                    .map(observation -> assembleDataValue(observation, (S) observation.getDataset(), query))
+                    .filter(Objects::nonNull)
+                    .forEachOrdered(result::addNewValue);
+        return result;
+    }
+
     protected Data<V> assembleExpandedData(S dataset, DbQuery dbQuery, Session session) {
         return assembleExpandedData(dataset.getId(), dbQuery, session);
     }
@@ -118,6 +151,42 @@ public abstract class AbstractDataRepository<S extends DatasetEntity,
         return lastObservation != null ? lastObservation.getGeometryEntity() : null;
     }
 
+    /**
+     * Loads the observations of a dataset. Unless expanded output is requested (which needs parameters and
+     * other lazy associations), observations are read from a stateless session if the session store is
+     * configured so. The stateless session is opened on the connection of the given session.
+     *
+     * @param dataset
+     *        the dataset id
+     * @param query
+     *        the query
+     * @param session
+     *        the session
+     * @return the observations of the dataset
+     */
+    protected List<E> getObservations(Long dataset, DbQuery query, Session session) {
+        if (!query.isExpanded() && isStatelessReads()) {
+            return session.doReturningWork(connection -> {
+                StatelessSession reader = session.getSessionFactory().openStatelessSession(connection);
+                try {
+                    return new StatelessDataDao<>(session, reader, getDataEntityType())
+                            .getAllInstancesFor(dataset, query);
+                } finally {
+                    reader.close();
+                }
+            });
+        }
+        return createDataDao(session).getAllInstancesFor(dataset, query);
+    }
+
+    /**
+     * @return the concrete observation type, subclasses override it to avoid polymorphic queries
+     */
+    @SuppressWarnings("unchecked")
+    protected Class<E> getDataEntityType() {
+        return (Class<E>) (Class<?>) DataEntity.class;
+    }
+
     protected DatasetDao<S> getSeriesDao(Session session) {
         return new DatasetDao<>(session);
     }
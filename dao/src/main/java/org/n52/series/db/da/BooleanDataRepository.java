@@ -36,7 +36,6 @@ import org.n52.io.response.dataset.bool.BooleanValue;
 import org.n52.series.db.beans.BooleanDataEntity;
 import org.n52.series.db.beans.DatasetEntity;
 import org.n52.series.db.beans.ServiceEntity;
-import org.n52.series.db.dao.DataDao;
 import org.n52.series.db.dao.DbQuery;
 
 public class BooleanDataRepository
@@ -47,11 +46,15 @@ public class BooleanDataRepository
         return new BooleanValue();
     }
 
+    @Override
+    protected Class<BooleanDataEntity> getDataEntityType() {
+        return BooleanDataEntity.class;
+    }
+
     @Override
     protected Data<BooleanValue> assembleData(Long dataset, DbQuery query, Session session) {
         Data<BooleanValue> result = new Data<>();
-        DataDao<BooleanDataEntity> dao = createDataDao(session);
-        List<BooleanDataEntity> observations = dao.getAllInstancesFor(dataset, query);
+        List<BooleanDataEntity> observations = getObservations(dataset, query, session);
         for (BooleanDataEntity observation : observations) {
             if (observation != null) {
                 result.addNewValue(assembleDataValue(observation, observation.getDataset(), query));
@@ -37,7 +37,6 @@ import org.n52.series.db.DataRepositoryComponent;
 import org.n52.series.db.beans.CategoryDataEntity;
 import org.n52.series.db.beans.DatasetEntity;
 import org.n52.series.db.beans.ServiceEntity;
-import org.n52.series.db.dao.DataDao;
 import org.n52.series.db.dao.DbQuery;
 
 @DataRepositoryComponent(value = "category", datasetEntityType = DatasetEntity.class)
@@ -49,11 +48,15 @@ public class CategoryDataRepository
         return new CategoryValue();
     }
 
+    @Override
+    protected Class<CategoryDataEntity> getDataEntityType() {
+        return CategoryDataEntity.class;
+    }
+
     @Override
     protected Data<CategoryValue> assembleData(Long dataset, DbQuery query, Session session) {
         Data<CategoryValue> result = new Data<>();
-        DataDao<CategoryDataEntity> dao = new DataDao<>(session);
-        List<CategoryDataEntity> observations = dao.getAllInstancesFor(dataset, query);
+        List<CategoryDataEntity> observations = getObservations(dataset, query, session);
         for (CategoryDataEntity observation : observations) {
             if (observation != null) {
                 result.addNewValue(assembleDataValue(observation, observation.getDataset(), query));
@@ -40,7 +40,6 @@ import org.n52.series.db.DataRepositoryComponent;
 import org.n52.series.db.beans.CountDataEntity;
 import org.n52.series.db.beans.DatasetEntity;
 import org.n52.series.db.beans.ServiceEntity;
-import org.n52.series.db.dao.DataDao;
 import org.n52.series.db.dao.DbQuery;
 
 @DataRepositoryComponent(value = "count", datasetEntityType = DatasetEntity.class)
@@ -79,11 +78,15 @@ public class CountDataRepository extends AbstractNumericalDataRepository<CountDa
         return super.getLastValue(entity, session, query);
     }
 
+    @Override
+    protected Class<CountDataEntity> getDataEntityType() {
+        return CountDataEntity.class;
+    }
+
     @Override
     protected Data<CountValue> assembleData(Long dataset, DbQuery query, Session session) {
         Data<CountValue> result = new Data<>();
-        DataDao<CountDataEntity> dao = new DataDao<>(session);
-        List<CountDataEntity> observations = dao.getAllInstancesFor(dataset, query);
+        List<CountDataEntity> observations = getObservations(dataset, query, session);
         for (CountDataEntity observation : observations) {
             if (observation != null) {
                 result.addNewValue(assembleDataValue(observation, observation.getDataset(), query));
@@ -30,6 +30,7 @@ package org.n52.series.db.da;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import org.hibernate.Session;
 import org.n52.io.response.dataset.AbstractValue;
@@ -53,6 +54,18 @@ public interface DataRepository<S extends DatasetEntity, E extends DataEntity<T>
      */
     Data<V> getData(String id, DbQuery query);
 
+    /**
+     * Assembles observation values as one {@link Data} output per result time. All result times are loaded
+     * with a single query.
+     *
+     * @param id
+     *            the dataset id
+     * @param query
+     *            the query
+     * @return the assembled data per result time (ISO 8601), in ascending order
+     */
+    Map<String, Data<V>> getDataByResultTime(String id, DbQuery query);
+
     /**
      * Assembles a list of reference values.
      *
@@ -244,9 +244,9 @@ public class DatasetRepository<V extends AbstractValue<?>> extends SessionAwareR
     public Collection<SearchResult> searchFor(IoParameters paramters) {
         Session session = getSession();
         try {
-            DatasetDao<? extends DatasetEntity> dao = getDatasetDao(DatasetEntity.class, session);
+            DatasetDao<DatasetEntity> dao = new DatasetDao<>(session, DatasetEntity.class);
             DbQuery query = getDbQuery(paramters);
-            List<? extends DatasetEntity> found = dao.find(query);
+            List<DatasetEntity> found = getSearchableDao(dao, dao, session).find(query);
             return convertToSearchResults(found, query);
         } finally {
             returnSession(session);
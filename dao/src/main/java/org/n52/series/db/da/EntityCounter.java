@@ -28,8 +28,16 @@
  */
 package org.n52.series.db.da;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
 import org.hibernate.Session;
 import org.n52.io.request.IoParameters;
+import org.n52.series.db.DaoExecutor;
 import org.n52.series.db.DataAccessException;
 import org.n52.series.db.DataRepositoryTypeFactory;
 import org.n52.series.db.HibernateSessionStore;
@@ -46,16 +54,62 @@ import org.n52.series.db.dao.PhenomenonDao;
 import org.n52.series.db.dao.PlatformDao;
 import org.n52.series.db.dao.ProcedureDao;
 import org.n52.series.db.dao.SamplingDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 public class EntityCounter {
 
+    public static final String FEATURES = "features";
+
+    public static final String OFFERINGS = "offerings";
+
+    public static final String PROCEDURES = "procedures";
+
+    public static final String PHENOMENA = "phenomena";
+
+    public static final String CATEGORIES = "categories";
+
+    public static final String PLATFORMS = "platforms";
+
+    public static final String DATASETS = "datasets";
+
+    public static final String SAMPLINGS = "samplings";
+
+    public static final String MEASURING_PROGRAMS = "measuringPrograms";
+
+    public static final String TIMESERIES = "timeseries";
+
+    public static final String INDIVIDUAL_OBSERVATIONS = "individualObservation";
+
+    public static final String TRAJECTORIES = "trajectory";
+
+    public static final String PROFILES = "profile";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EntityCounter.class);
+
+    private static final long DEFAULT_CACHE_TTL = 60;
+
+    private static final int DEFAULT_CACHE_SIZE = 1000;
+
     private final HibernateSessionStore sessionStore;
 
     private final DataRepositoryTypeFactory dataRepositoryFactory;
 
     private final DbQueryFactory dbQueryFactory;
 
+    @Autowired(required = false)
+    private DaoExecutor daoExecutor;
+
+    private volatile Cache<CountKey, Long> cache = createCache(DEFAULT_CACHE_TTL, DEFAULT_CACHE_SIZE);
+
+    private long cacheTtl = DEFAULT_CACHE_TTL;
+
+    private int cacheSize = DEFAULT_CACHE_SIZE;
+
     @Autowired
     public EntityCounter(HibernateSessionStore sesionStore, DataRepositoryTypeFactory dataRepositoryFactory,
             DbQueryFactory dbQueryFactory) {
@@ -64,145 +118,318 @@ public class EntityCounter {
         this.dbQueryFactory = dbQueryFactory;
     }
 
-    public Long countFeatures(DbQuery query) throws DataAccessException {
-        Session session = sessionStore.getSession();
-        try {
-            return getCount(new FeatureDao(session), query);
-        } finally {
-            sessionStore.returnSession(session);
+    /**
+     * @param cacheTtl
+     *        the time (in seconds) counts are cached, values &lt;= 0 disable caching
+     */
+    public void setCacheTtl(long cacheTtl) {
+        this.cacheTtl = cacheTtl;
+        this.cache = createCache(cacheTtl, cacheSize);
+    }
+
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+        this.cache = createCache(cacheTtl, cacheSize);
+    }
+
+    /**
+     * Drops all cached counts once the metadata catalog detects changes in the database.
+     *
+     * @param metadataCatalog
+     *        the metadata catalog
+     */
+    @Autowired(required = false)
+    public void setMetadataCatalog(MetadataCatalog metadataCatalog) {
+        if (metadataCatalog != null) {
+            metadataCatalog.addRefreshListener(this::invalidate);
         }
     }
 
+    /**
+     * Drops all cached counts, e.g. after entities have been added or removed.
+     */
+    public void invalidate() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Drops the cached counts of the given entity for all filters.
+     *
+     * @param entity
+     *        the entity, e.g. {@link #FEATURES} or {@link #DATASETS}
+     */
+    public void invalidate(String entity) {
+        cache.asMap().keySet().removeIf(key -> key.entity.equals(entity));
+    }
+
+    /**
+     * Drops the cached counts of all entities which have been counted with the filter parameters of the given
+     * query.
+     *
+     * @param query
+     *        the query
+     */
+    public void invalidate(DbQuery query) {
+        String filter = createFilterKey(query);
+        cache.asMap().keySet().removeIf(key -> key.filter.equals(filter));
+    }
+
+    /**
+     * Drops the cached count of the given entity and filter parameters.
+     *
+     * @param entity
+     *        the entity, e.g. {@link #FEATURES} or {@link #DATASETS}
+     * @param query
+     *        the query
+     */
+    public void invalidate(String entity, DbQuery query) {
+        cache.invalidate(createCacheKey(entity, query));
+    }
+
+    public Long countFeatures(DbQuery query) throws DataAccessException {
+        return count(FEATURES, query);
+    }
+
     public Long countOfferings(DbQuery query) throws DataAccessException {
-        Session session = sessionStore.getSession();
-        try {
-            return getCount(new OfferingDao(session), query);
-        } finally {
-            sessionStore.returnSession(session);
-        }
+        return count(OFFERINGS, query);
     }
 
     public Long countProcedures(DbQuery query) throws DataAccessException {
-        Session session = sessionStore.getSession();
-        try {
-            return getCount(new ProcedureDao(session), query);
-        } finally {
-            sessionStore.returnSession(session);
-        }
+        return count(PROCEDURES, query);
     }
 
     public Long countPhenomena(DbQuery query) throws DataAccessException {
-        Session session = sessionStore.getSession();
-        try {
-            return getCount(new PhenomenonDao(session), query);
-        } finally {
-            sessionStore.returnSession(session);
-        }
+        return count(PHENOMENA, query);
     }
 
     public Long countCategories(DbQuery query) throws DataAccessException {
-        Session session = sessionStore.getSession();
-        try {
-            return getCount(new CategoryDao(session), query);
-        } finally {
-            sessionStore.returnSession(session);
-        }
+        return count(CATEGORIES, query);
     }
 
     public Long countPlatforms(DbQuery query) throws DataAccessException {
-        Session session = sessionStore.getSession();
-        try {
-            return getCount(new PlatformDao(session), query);
-        } finally {
-            sessionStore.returnSession(session);
-        }
+        return count(PLATFORMS, query);
     }
 
     public Long countDatasets(DbQuery query) throws DataAccessException {
-        Session session = sessionStore.getSession();
-        try {
-            IoParameters parameters = query.getParameters();
-            if (parameters.getValueTypes().isEmpty()) {
-                parameters = parameters.extendWith("valueTypes",
-                        dataRepositoryFactory.getKnownTypes().toArray(new String[0]));
-                return getCount(new DatasetDao<>(session, DatasetEntity.class), dbQueryFactory.createFrom(parameters));
-            }
-            return getCount(new DatasetDao<>(session, DatasetEntity.class), query);
-        } finally {
-            sessionStore.returnSession(session);
-        }
+        return count(DATASETS, query);
     }
 
     public Long countSamplings(DbQuery query) throws DataAccessException {
-        Session session = sessionStore.getSession();
-        try {
-            return getCount(new SamplingDao(session), query);
-        } finally {
-            sessionStore.returnSession(session);
-        }
+        return count(SAMPLINGS, query);
     }
 
     public Long countMeasuringPrograms(DbQuery query) throws DataAccessException {
-        Session session = sessionStore.getSession();
-        try {
-            return getCount(new MeasuringProgramDao(session), query);
-        } finally {
-            sessionStore.returnSession(session);
-        }
+        return count(MEASURING_PROGRAMS, query);
     }
 
     public Long countStations() throws DataAccessException {
-        Session session = sessionStore.getSession();
-        try {
-            DbQuery query = createBackwardsCompatibleQuery();
-            return countFeatures(query);
-        } finally {
-            sessionStore.returnSession(session);
-        }
+        return countFeatures(createBackwardsCompatibleQuery());
     }
 
     @Deprecated
     public Long countTimeseries() throws DataAccessException {
-        Session session = sessionStore.getSession();
-        try {
-            DbQuery query = createBackwardsCompatibleQuery();
-            return countDatasets(query);
-        } finally {
-            sessionStore.returnSession(session);
-        }
+        return countDatasets(createBackwardsCompatibleQuery());
     }
 
     public Long countTimeseries(DbQuery query) throws DataAccessException {
-        return countDataset(query, "timeseries");
+        return count(TIMESERIES, query);
     }
 
     public Long countIndividualObservations(DbQuery query) throws DataAccessException {
-        return countDataset(query, "individualObservation");
+        return count(INDIVIDUAL_OBSERVATIONS, query);
     }
 
     public Long countTrajectories(DbQuery query) throws DataAccessException {
-        return countDataset(query, "trajectory");
+        return count(TRAJECTORIES, query);
     }
 
     public Long countProfiles(DbQuery query) throws DataAccessException {
-        return countDataset(query, "profile");
+        return count(PROFILES, query);
+    }
+
+    /**
+     * Counts the given entities in one go. Cached counts are taken from the cache, all others are counted
+     * concurrently on the {@link DaoExecutor} (each in its own session) if fan-out is enabled, or within a
+     * single session otherwise.
+     *
+     * @param query
+     *        the query
+     * @param entities
+     *        the entities to count, e.g. {@link #FEATURES} or {@link #DATASETS}
+     * @return the counts by entity
+     * @throws DataAccessException
+     *         if counting fails
+     */
+    public Map<String, Long> countAll(DbQuery query, String... entities) throws DataAccessException {
+        Map<String, Long> counts = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String entity : entities) {
+            Long cached = cache.getIfPresent(createCacheKey(entity, query));
+            if (cached != null) {
+                counts.put(entity, cached);
+            } else {
+                missing.add(entity);
+            }
+        }
+        if (missing.isEmpty()) {
+            return counts;
+        }
+        long start = System.currentTimeMillis();
+        if (missing.size() > 1 && daoExecutor != null && daoExecutor.isFanOut()) {
+            List<Long> missingCounts = daoExecutor.map(missing, entity -> count(entity, query));
+            for (int i = 0; i < missing.size(); i++) {
+                counts.put(missing.get(i), missingCounts.get(i));
+            }
+        } else {
+            Session session = sessionStore.getSession();
+            try {
+                for (String entity : missing) {
+                    Long count = count(entity, query, session);
+                    cache.put(createCacheKey(entity, query), count);
+                    counts.put(entity, count);
+                }
+            } finally {
+                sessionStore.returnSession(session);
+            }
+        }
+        LOGGER.debug("Counting {} took {} ms", missing, System.currentTimeMillis() - start);
+        return counts;
+    }
+
+    /**
+     * Counts the given entity.
+     *
+     * @param entity
+     *        the entity to count, e.g. {@link #FEATURES} or {@link #DATASETS}
+     * @param query
+     *        the query
+     * @return the number of matching entities
+     * @throws DataAccessException
+     *         if counting fails
+     */
+    public Long count(String entity, DbQuery query) throws DataAccessException {
+        CountKey key = createCacheKey(entity, query);
+        Long cached = cache.getIfPresent(key);
+        if (cached != null) {
+            return cached;
+        }
+        Session session = sessionStore.getSession();
+        try {
+            Long count = count(entity, query, session);
+            cache.put(key, count);
+            return count;
+        } finally {
+            sessionStore.returnSession(session);
+        }
     }
 
-    private Long countDataset(DbQuery query, String datasetType) throws DataAccessException {
+    /**
+     * Estimates the number of entities from the query plan of the count query if the query is unfiltered.
+     * Implicit filters (e.g. published datasets of known value types) are part of the estimated query. Falls
+     * back to an exact count if the query is filtered or no estimate is available.
+     *
+     * @param entity
+     *        the entity to count, e.g. {@link #FEATURES} or {@link #DATASETS}
+     * @param query
+     *        the query
+     * @return the (approximate) number of entities
+     * @throws DataAccessException
+     *         if counting fails
+     */
+    public Long countApproximately(String entity, DbQuery query) throws DataAccessException {
+        if (!query.isUnfiltered()) {
+            return count(entity, query);
+        }
+        Long cached = cache.getIfPresent(createCacheKey(entity, query));
+        if (cached != null) {
+            return cached;
+        }
         Session session = sessionStore.getSession();
         try {
-            IoParameters parameters = query.getParameters();
-            parameters = parameters.replaceWith("datasetTypes", datasetType);
-            return getCount(new DatasetDao<>(session, DatasetEntity.class), dbQueryFactory.createFrom(parameters));
+            return count(entity, query, session, true);
         } finally {
             sessionStore.returnSession(session);
         }
     }
 
+    private Long count(String entity, DbQuery query, Session session) throws DataAccessException {
+        return count(entity, query, session, false);
+    }
+
+    private Long count(String entity, DbQuery query, Session session, boolean approximate)
+            throws DataAccessException {
+        switch (entity) {
+            case DATASETS:
+                return countDatasets(query, session, approximate);
+            case TIMESERIES:
+            case INDIVIDUAL_OBSERVATIONS:
+            case TRAJECTORIES:
+            case PROFILES:
+                return countDataset(query, entity, session, approximate);
+            default:
+                AbstractDao<?> dao = createDao(entity, session);
+                if (dao == null) {
+                    throw new DataAccessException("Unknown entity to count: " + entity);
+                }
+                return getCount(dao, query, approximate);
+        }
+    }
+
+    private AbstractDao<?> createDao(String entity, Session session) {
+        switch (entity) {
+            case FEATURES:
+                return new FeatureDao(session);
+            case OFFERINGS:
+                return new OfferingDao(session);
+            case PROCEDURES:
+                return new ProcedureDao(session);
+            case PHENOMENA:
+                return new PhenomenonDao(session);
+            case CATEGORIES:
+                return new CategoryDao(session);
+            case PLATFORMS:
+                return new PlatformDao(session);
+            case DATASETS:
+                return new DatasetDao<>(session, DatasetEntity.class);
+            case SAMPLINGS:
+                return new SamplingDao(session);
+            case MEASURING_PROGRAMS:
+                return new MeasuringProgramDao(session);
+            default:
+                return null;
+        }
+    }
+
+    private Long countDatasets(DbQuery query, Session session, boolean approximate) throws DataAccessException {
+        IoParameters parameters = query.getParameters();
+        if (parameters.getValueTypes().isEmpty()) {
+            parameters = parameters.extendWith("valueTypes",
+                    dataRepositoryFactory.getKnownTypes().toArray(new String[0]));
+            return getCount(new DatasetDao<>(session, DatasetEntity.class),
+                            dbQueryFactory.createFrom(parameters),
+                            approximate);
+        }
+        return getCount(new DatasetDao<>(session, DatasetEntity.class), query, approximate);
+    }
+
+    private Long countDataset(DbQuery query, String datasetType, Session session, boolean approximate)
+            throws DataAccessException {
+        IoParameters parameters = query.getParameters();
+        parameters = parameters.replaceWith("datasetTypes", datasetType);
+        return getCount(new DatasetDao<>(session, DatasetEntity.class),
+                        dbQueryFactory.createFrom(parameters),
+                        approximate);
+    }
+
     public Long getCount(AbstractDao<?> dao, DbQuery query) throws DataAccessException {
         return dao.getCount(query);
     }
 
+    private Long getCount(AbstractDao<?> dao, DbQuery query, boolean approximate) throws DataAccessException {
+        Long estimate = approximate ? dao.getApproximateCount(query) : null;
+        return estimate != null ? estimate : getCount(dao, query);
+    }
+
     private DbQuery createBackwardsCompatibleQuery() {
         IoParameters parameters = IoParameters.createDefaults();
         // parameters = parameters.extendWith(Parameters.FILTER_PLATFORM_TYPES,
@@ -211,4 +438,48 @@ public class EntityCounter {
         return dbQueryFactory.createFrom(parameters);
     }
 
+    private static CountKey createCacheKey(String entity, DbQuery query) {
+        return new CountKey(entity, createFilterKey(query));
+    }
+
+    private static String createFilterKey(DbQuery query) {
+        return query.getDatabaseSridCode() + "|" + query.getParameters();
+    }
+
+    private static Cache<CountKey, Long> createCache(long ttl, int size) {
+        CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder();
+        return ttl > 0
+                ? builder.expireAfterWrite(ttl, TimeUnit.SECONDS).maximumSize(Math.max(0, size)).build()
+                : builder.maximumSize(0).build();
+    }
+
+    private static final class CountKey {
+
+        private final String entity;
+
+        private final String filter;
+
+        CountKey(String entity, String filter) {
+            this.entity = entity;
+            this.filter = filter;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(entity, filter);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CountKey)) {
+                return false;
+            }
+            CountKey other = (CountKey) obj;
+            return Objects.equals(entity, other.entity) && Objects.equals(filter, other.filter);
+        }
+    }
+
 }
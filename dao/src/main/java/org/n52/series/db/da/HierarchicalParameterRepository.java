@@ -31,8 +31,6 @@ package org.n52.series.db.da;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.Objects;
-import java.util.stream.Collectors;
 
 import org.hibernate.Session;
 import org.n52.io.response.AbstractOutput;
@@ -53,8 +51,7 @@ public abstract class HierarchicalParameterRepository<E extends HierarchicalEnti
         if (entities != null) {
             long start = System.currentTimeMillis();
             LOGGER.debug("Expandend entities raw: " + entities.size());
-            List<O> result = entities.parallelStream().map(e -> createExpanded(e, query, session))
-                    .filter(Objects::nonNull).collect(Collectors.toList());
+            List<O> result = mapToOutputs(entities, e -> createExpanded(e, query, session));
             LOGGER.debug("Expandend entities processed: " + result.size());
             LOGGER.debug("Processing all expanded instances takes {} ms", System.currentTimeMillis() - start);
             return result;
@@ -67,8 +64,7 @@ public abstract class HierarchicalParameterRepository<E extends HierarchicalEnti
         long start = System.currentTimeMillis();
         if (entities != null) {
             LOGGER.debug("Condensed entities raw: " + entities.size());
-            List<O> result = entities.parallelStream().map(entity -> createCondensed(entity, query, session))
-                    .filter(Objects::nonNull).collect(Collectors.toList());
+            List<O> result = mapToOutputs(entities, entity -> createCondensed(entity, query, session));
             LOGGER.debug("Condensed entities processed: " + result.size());
             LOGGER.debug("Processing all condensed instances takes {} ms", System.currentTimeMillis() - start);
             return result;
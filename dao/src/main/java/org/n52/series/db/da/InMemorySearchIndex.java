@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2015-2021 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.da;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.n52.io.request.IoParameters;
+import org.n52.io.request.Parameters;
+import org.n52.series.db.dao.DbQuery;
+import org.n52.series.db.dao.DbQueryFactory;
+import org.n52.series.db.dao.DefaultDbQueryFactory;
+import org.n52.series.spi.search.SearchResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * {@link SearchEngine} backed by an in-memory trigram index over the names of the entities of the indexed
+ * repositories. Labels are kept for all configured locales to present the results. Each trigram maps to the
+ * sorted positions of the documents containing it, so a search only intersects a few posting lists and
+ * verifies the remaining candidates instead of running a {@code LIKE '%term%'} scan per table. The index is
+ * rebuilt in the background and whenever the {@link MetadataCatalog} gets refreshed or invalidated.
+ * <p>
+ * Requests which restrict the searched entities by further filters, limit or offset, or which ask for a locale
+ * that is not indexed, are not answered by the index and left to the repositories.
+ */
+public class InMemorySearchIndex implements SearchEngine {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(InMemorySearchIndex.class);
+
+    private static final int GRAM_SIZE = 3;
+
+    private static final long DEFAULT_REFRESH_INTERVAL = 600;
+
+    @Autowired(required = false)
+    private DbQueryFactory dbQueryFactory;
+
+    @Autowired(required = false)
+    private MetadataCatalog metadataCatalog;
+
+    private List<IndexableRepository> repositories = Collections.emptyList();
+
+    private List<String> locales = Collections.singletonList("en");
+
+    private volatile List<Segment> segments;
+
+    private ScheduledExecutorService scheduler;
+
+    private boolean enabled;
+
+    private long refreshInterval = DEFAULT_REFRESH_INTERVAL;
+
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "search-index-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.execute(this::rebuild);
+        if (refreshInterval > 0) {
+            scheduler.scheduleWithFixedDelay(this::rebuild, refreshInterval, refreshInterval, TimeUnit.SECONDS);
+        }
+        if (metadataCatalog != null) {
+            metadataCatalog.addRefreshListener(() -> scheduler.execute(this::rebuild));
+        }
+        LOGGER.info("In-memory search index enabled, rebuilding every {}s.", refreshInterval);
+    }
+
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param refreshInterval
+     *        the interval (in seconds) to rebuild the index, values &lt;= 0 disable the periodic rebuild
+     */
+    public void setRefreshInterval(long refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+
+    public void setRepositories(List<IndexableRepository> repositories) {
+        this.repositories = repositories != null
+                ? new ArrayList<>(repositories)
+                : Collections.emptyList();
+    }
+
+    /**
+     * @param locales
+     *        comma separated list of locales to index labels for, requests for other locales are not answered
+     *        by the index
+     */
+    public void setLocales(String locales) {
+        List<String> configured = new ArrayList<>();
+        for (String locale : locales.split(",")) {
+            if (!locale.trim().isEmpty()) {
+                configured.add(locale.trim());
+            }
+        }
+        this.locales = configured;
+    }
+
+    public boolean isReady() {
+        return enabled && segments != null;
+    }
+
+    /**
+     * Reindexes all repositories and replaces the index at once. The current index is kept if rebuilding
+     * fails.
+     */
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        try {
+            List<Segment> rebuilt = new ArrayList<>();
+            for (IndexableRepository repository : repositories) {
+                rebuilt.add(new Segment(repository, repository.getSearchDocuments(locales)));
+            }
+            segments = rebuilt;
+            LOGGER.debug("Rebuilding search index took {} ms", System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not rebuild search index.", e);
+        }
+    }
+
+    @Override
+    public boolean canSearch(IoParameters parameters) {
+        if (!isReady() || parameters.shallBehaveBackwardsCompatible()) {
+            return false;
+        }
+        DbQuery query = createQuery(parameters);
+        String term = query.getSearchTerm();
+        return term != null
+                && !term.contains("%")
+                && !term.contains("_")
+                && !term.contains("\\")
+                && isIndexedLocale(query.getLocale())
+                && !parameters.containsParameter(Parameters.LIMIT)
+                && !parameters.containsParameter(Parameters.OFFSET)
+                && query.isUnfiltered();
+    }
+
+    @Override
+    public boolean covers(OutputAssembler<?> repository) {
+        return repositories.contains(repository);
+    }
+
+    @Override
+    public Collection<SearchResult> search(IoParameters parameters) {
+        DbQuery query = createQuery(parameters);
+        String term = query.getSearchTerm().toLowerCase(Locale.ROOT);
+        Set<SearchResult> results = new HashSet<>();
+        List<Segment> current = segments;
+        if (current != null) {
+            for (Segment segment : current) {
+                for (SearchDocument document : segment.find(term)) {
+                    results.add(segment.repository.createSearchResult(document, query));
+                }
+            }
+        }
+        return results;
+    }
+
+    private boolean isIndexedLocale(String locale) {
+        return locale == null || locales.contains(locale);
+    }
+
+    private DbQuery createQuery(IoParameters parameters) {
+        DbQueryFactory factory = dbQueryFactory != null
+                ? dbQueryFactory
+                : new DefaultDbQueryFactory();
+        return factory.createFrom(parameters);
+    }
+
+    private static Set<String> trigrams(String value) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (int i = 0; i + GRAM_SIZE <= value.length(); i++) {
+            grams.add(value.substring(i, i + GRAM_SIZE));
+        }
+        return grams;
+    }
+
+    private static final class Segment {
+
+        private final IndexableRepository repository;
+
+        private final List<SearchDocument> documents;
+
+        private final Map<String, int[]> postings;
+
+        Segment(IndexableRepository repository, List<SearchDocument> documents) {
+            this.repository = repository;
+            this.documents = new ArrayList<>(documents);
+            Map<String, List<Integer>> positions = new HashMap<>();
+            for (int i = 0; i < this.documents.size(); i++) {
+                for (String gram : trigrams(this.documents.get(i).getTerm())) {
+                    positions.computeIfAbsent(gram, k -> new ArrayList<>()).add(i);
+                }
+            }
+            this.postings = new HashMap<>(positions.size());
+            positions.forEach((gram, list) -> postings.put(gram, list.stream().mapToInt(Integer::intValue).toArray()));
+        }
+
+        List<SearchDocument> find(String term) {
+            List<SearchDocument> found = new ArrayList<>();
+            if (term.length() < GRAM_SIZE) {
+                for (SearchDocument document : documents) {
+                    if (document.matches(term)) {
+                        found.add(document);
+                    }
+                }
+                return found;
+            }
+            int[] candidates = null;
+            for (String gram : trigrams(term)) {
+                int[] posting = postings.get(gram);
+                if (posting == null) {
+                    return found;
+                }
+                candidates = candidates == null
+                        ? posting
+                        : intersect(candidates, posting);
+                if (candidates.length == 0) {
+                    return found;
+                }
+            }
+            for (int candidate : candidates) {
+                SearchDocument document = documents.get(candidate);
+                if (document.matches(term)) {
+                    found.add(document);
+                }
+            }
+            return found;
+        }
+
+        private static int[] intersect(int[] first, int[] second) {
+            int[] result = new int[Math.min(first.length, second.length)];
+            int i = 0;
+            int j = 0;
+            int k = 0;
+            while (i < first.length && j < second.length) {
+                if (first[i] < second[j]) {
+                    i++;
+                } else if (first[i] > second[j]) {
+                    j++;
+                } else {
+                    result[k++] = first[i];
+                    i++;
+                    j++;
+                }
+            }
+            return Arrays.copyOf(result, k);
+        }
+    }
+
+}
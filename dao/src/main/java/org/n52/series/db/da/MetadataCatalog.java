@@ -0,0 +1,549 @@
+/*
+ * Copyright (C) 2015-2021 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.da;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.persistence.metamodel.EntityType;
+
+import org.hibernate.Session;
+import org.hibernate.criterion.ProjectionList;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.n52.series.db.DataModelUtil;
+import org.n52.series.db.HibernateSessionStore;
+import org.n52.series.db.beans.CategoryEntity;
+import org.n52.series.db.beans.DatasetEntity;
+import org.n52.series.db.beans.DescribableEntity;
+import org.n52.series.db.beans.FeatureEntity;
+import org.n52.series.db.beans.OfferingEntity;
+import org.n52.series.db.beans.PhenomenonEntity;
+import org.n52.series.db.beans.PlatformEntity;
+import org.n52.series.db.beans.ProcedureEntity;
+import org.n52.series.db.beans.i18n.I18nEntity;
+import org.n52.series.db.dao.DbQuery;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanInstantiationException;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.util.ReflectionUtils;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Optional in-memory snapshot of parameter listings (services, procedures, phenomena, offerings, categories,
+ * platforms, features, ...). Once a listing has been assembled it is kept as snapshot and served without
+ * touching the database. Each request gets deep copies of the snapshot's outputs (including nested outputs,
+ * collections and maps), so outputs modified later on (e.g. by adding extras) never leak into the snapshot.
+ * <p>
+ * Only the very first request of a listing loads it. Afterwards, all known listings are reloaded in the
+ * background every refresh interval and requests keep getting the previous snapshot until the reloaded one
+ * replaces it. In between, the parameter and dataset tables are checked periodically (row counts, highest
+ * ids, published datasets and checksums over ids, names and translations) and all listings are reloaded in
+ * the background as soon as a change has been detected. The least recently used snapshots are evicted once
+ * the maximum number of entries has been reached.
+ */
+public class MetadataCatalog {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MetadataCatalog.class);
+
+    private static final int DEFAULT_MAX_ENTRIES = 500;
+
+    private static final long DEFAULT_REFRESH_INTERVAL = 300;
+
+    private static final long DEFAULT_CHANGE_DETECTION_INTERVAL = 60;
+
+    private static final String OUTPUT_PACKAGE = "org.n52.io.";
+
+    private static final String PROPERTY_I18N_ENTITY_ID = "entity.id";
+
+    private static final String PROPERTY_I18N_LOCALE = "locale";
+
+    private static final String PROPERTY_I18N_DESCRIPTION = "description";
+
+    private static final Class<?>[] WATCHED_ENTITIES = {
+        ProcedureEntity.class,
+        PhenomenonEntity.class,
+        OfferingEntity.class,
+        FeatureEntity.class,
+        CategoryEntity.class,
+        PlatformEntity.class
+    };
+
+    @Autowired(required = false)
+    private HibernateSessionStore sessionStore;
+
+    private final List<Runnable> refreshListeners = new CopyOnWriteArrayList<>();
+
+    private volatile Cache<SnapshotKey, Snapshot> snapshots;
+
+    private volatile List<Object> fingerprint;
+
+    private ScheduledExecutorService scheduler;
+
+    private boolean enabled;
+
+    private long refreshInterval = DEFAULT_REFRESH_INTERVAL;
+
+    private long changeDetectionInterval = DEFAULT_CHANGE_DETECTION_INTERVAL;
+
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+
+    public void init() {
+        snapshots = CacheBuilder.newBuilder().maximumSize(Math.max(0, maxEntries)).build();
+        boolean detectChanges = sessionStore != null && changeDetectionInterval > 0;
+        if (enabled && (refreshInterval > 0 || detectChanges)) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "metadata-catalog-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+            if (refreshInterval > 0) {
+                scheduler.scheduleWithFixedDelay(this::reload, refreshInterval, refreshInterval, TimeUnit.SECONDS);
+            }
+            if (detectChanges) {
+                scheduler.scheduleWithFixedDelay(this::detectChanges, 0, changeDetectionInterval,
+                        TimeUnit.SECONDS);
+            }
+        }
+        if (enabled) {
+            LOGGER.info("Metadata catalog enabled, snapshots are reloaded every {}s, changes are checked every {}s.",
+                    refreshInterval, changeDetectionInterval);
+        }
+    }
+
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param refreshInterval
+     *        the interval (in seconds) to reload all snapshots in the background, values &lt;= 0 keep
+     *        snapshots until a change has been detected
+     */
+    public void setRefreshInterval(long refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+
+    /**
+     * @param changeDetectionInterval
+     *        the interval (in seconds) to check the database for changes, values &lt;= 0 disable the check
+     */
+    public void setChangeDetectionInterval(long changeDetectionInterval) {
+        this.changeDetectionInterval = changeDetectionInterval;
+    }
+
+    /**
+     * @param maxEntries
+     *        the maximum number of listings kept, the least recently used listings get evicted
+     */
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @param listener
+     *        gets notified each time the catalog has been invalidated or reloaded after a change
+     */
+    public void addRefreshListener(Runnable listener) {
+        refreshListeners.add(listener);
+    }
+
+    /**
+     * Returns the snapshot of the given listing. If no snapshot exists yet, the listing is loaded and added to
+     * the catalog. The loader is kept to reload the listing in the background later on.
+     *
+     * @param <O>
+     *        the output type
+     * @param repository
+     *        the repository the listing belongs to
+     * @param expanded
+     *        if the listing is expanded
+     * @param query
+     *        the query the listing was created with
+     * @param loader
+     *        loads the listing from the database, must not depend on the calling thread
+     * @return copies of the snapshot's outputs
+     */
+    @SuppressWarnings("unchecked")
+    public <O> List<O> get(Class<?> repository, boolean expanded, DbQuery query, Supplier<List<O>> loader) {
+        Cache<SnapshotKey, Snapshot> current = snapshots;
+        if (!enabled || current == null) {
+            return loader.get();
+        }
+        SnapshotKey key = new SnapshotKey(repository, expanded, query);
+        List<O> snapshot;
+        try {
+            snapshot = (List<O>) current.get(key, () -> new Snapshot(loader)).outputs;
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException("Could not load metadata snapshot " + key, cause);
+        }
+        Map<Object, Object> copied = new IdentityHashMap<>();
+        List<O> copies = new ArrayList<>(snapshot.size());
+        for (O output : snapshot) {
+            copies.add(copy(output, copied));
+        }
+        return copies;
+    }
+
+    /**
+     * Reloads all snapshots in the background, e.g. after metadata has been changed in the database. Requests
+     * keep getting the previous snapshots until they have been reloaded. Without a background thread (the
+     * catalog is disabled) all snapshots are dropped instead.
+     */
+    public void refresh() {
+        if (scheduler != null) {
+            scheduler.execute(() -> {
+                reload();
+                notifyRefreshListeners();
+            });
+        } else {
+            invalidate();
+        }
+    }
+
+    /**
+     * Drops all snapshots, so listings get reloaded on the next request. Prefer {@link #refresh()} which does
+     * not make requests wait for the database.
+     */
+    public void invalidate() {
+        Cache<SnapshotKey, Snapshot> current = snapshots;
+        if (current != null) {
+            current.invalidateAll();
+        }
+        notifyRefreshListeners();
+    }
+
+    /**
+     * Reloads all known snapshots one after the other. A snapshot failing to reload keeps its previous
+     * outputs.
+     */
+    void reload() {
+        Cache<SnapshotKey, Snapshot> current = snapshots;
+        if (current == null) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        for (Map.Entry<SnapshotKey, Snapshot> entry : new ArrayList<>(current.asMap().entrySet())) {
+            try {
+                entry.getValue().reload();
+            } catch (RuntimeException e) {
+                LOGGER.warn("Could not reload metadata snapshot {}, keeping the previous one.", entry.getKey(), e);
+            }
+        }
+        LOGGER.debug("Reloading {} metadata snapshots took {} ms", current.size(),
+                System.currentTimeMillis() - start);
+    }
+
+    public long size() {
+        Cache<SnapshotKey, Snapshot> current = snapshots;
+        return current != null
+                ? current.size()
+                : 0;
+    }
+
+    /**
+     * Reloads the catalog if the row counts, highest ids, the number of published datasets or the checksums
+     * over names and translations have changed since the last check.
+     */
+    void detectChanges() {
+        Session session = sessionStore.getSession();
+        try {
+            List<Object> next = createFingerprint(session);
+            List<Object> previous = fingerprint;
+            fingerprint = next;
+            if (previous != null && !previous.equals(next)) {
+                LOGGER.debug("Metadata has changed, reloading metadata catalog.");
+                reload();
+                notifyRefreshListeners();
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not check metadata for changes.", e);
+        } finally {
+            sessionStore.returnSession(session);
+        }
+    }
+
+    private static List<Object> createFingerprint(Session session) {
+        List<Object> values = new ArrayList<>();
+        addCountAndMaxId(DatasetEntity.class, session, values);
+        values.add(session.createCriteria(DatasetEntity.class)
+                .add(Restrictions.eq(DatasetEntity.PROPERTY_PUBLISHED, true))
+                .add(Restrictions.eq(DatasetEntity.PROPERTY_DELETED, false))
+                .setProjection(Projections.rowCount())
+                .uniqueResult());
+        for (Class<?> entity : WATCHED_ENTITIES) {
+            addCountAndMaxId(entity, session, values);
+            addChecksum(entity, session, values, DescribableEntity.PROPERTY_ID, DescribableEntity.PROPERTY_NAME,
+                    DescribableEntity.PROPERTY_DOMAIN_ID);
+        }
+        for (EntityType<?> entity : session.getSessionFactory().getMetamodel().getEntities()) {
+            Class<?> clazz = entity.getJavaType();
+            if (clazz != null && I18nEntity.class.isAssignableFrom(clazz)) {
+                addChecksum(clazz, session, values, PROPERTY_I18N_ENTITY_ID, PROPERTY_I18N_LOCALE,
+                        DescribableEntity.PROPERTY_NAME, PROPERTY_I18N_DESCRIPTION);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Adds an order independent checksum over the given properties of all rows, so renamed or translated
+     * entities get noticed even if row counts and ids stay the same.
+     */
+    private static void addChecksum(Class<?> entity, Session session, List<Object> values, String... properties) {
+        if (!DataModelUtil.isEntitySupported(entity, session)) {
+            return;
+        }
+        ProjectionList projection = Projections.projectionList();
+        for (String property : properties) {
+            projection.add(Projections.property(property));
+        }
+        long checksum = 0;
+        for (Object row : session.createCriteria(entity).setProjection(projection).list()) {
+            checksum += Arrays.deepHashCode((Object[]) row);
+        }
+        values.add(checksum);
+    }
+
+    private static void addCountAndMaxId(Class<?> entity, Session session, List<Object> values) {
+        if (!DataModelUtil.isEntitySupported(entity, session)) {
+            return;
+        }
+        Object[] row = (Object[]) session.createCriteria(entity)
+                .setProjection(Projections.projectionList()
+                        .add(Projections.rowCount())
+                        .add(Projections.max(DescribableEntity.PROPERTY_ID)))
+                .uniqueResult();
+        values.add(row[0]);
+        values.add(row[1]);
+    }
+
+    /**
+     * Deep copies an output, so setting values on the copy or on any of its nested outputs, collections, maps
+     * or arrays does not change the snapshot. Nested values of other types (strings, numbers, geometries,
+     * value objects without default constructor, ...) are treated as immutable and shared.
+     *
+     * @param copied
+     *        the copies made so far, keeps shared references (and cycles) intact
+     */
+    @SuppressWarnings("unchecked")
+    static <O> O copy(O output, Map<Object, Object> copied) {
+        if (output == null) {
+            return null;
+        }
+        Object existing = copied.get(output);
+        if (existing != null) {
+            return (O) existing;
+        }
+        try {
+            O copy = (O) BeanUtils.instantiateClass(output.getClass());
+            copied.put(output, copy);
+            ReflectionUtils.doWithFields(output.getClass(), field -> {
+                ReflectionUtils.makeAccessible(field);
+                field.set(copy, copyValue(field.get(output), copied));
+            }, field -> !Modifier.isStatic(field.getModifiers()));
+            return copy;
+        } catch (BeanInstantiationException e) {
+            throw new IllegalStateException("Metadata output " + output.getClass() + " cannot be copied.", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object copyValue(Object value, Map<Object, Object> copied) {
+        if (value == null) {
+            return null;
+        }
+        Object existing = copied.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        Class<?> type = value.getClass();
+        if (value instanceof SortedSet) {
+            return copyElements((Collection<?>) value,
+                    new TreeSet<>((Comparator<Object>) ((SortedSet<?>) value).comparator()), copied);
+        } else if (value instanceof Set) {
+            return copyElements((Collection<?>) value, new LinkedHashSet<>(), copied);
+        } else if (value instanceof Collection) {
+            return copyElements((Collection<?>) value, new ArrayList<>(), copied);
+        } else if (value instanceof SortedMap) {
+            return copyEntries((Map<?, ?>) value,
+                    new TreeMap<>((Comparator<Object>) ((SortedMap<?, ?>) value).comparator()), copied);
+        } else if (value instanceof Map) {
+            return copyEntries((Map<?, ?>) value, new LinkedHashMap<>(), copied);
+        } else if (type.isArray() && !type.getComponentType().isPrimitive()) {
+            int length = Array.getLength(value);
+            Object copy = Array.newInstance(type.getComponentType(), length);
+            copied.put(value, copy);
+            for (int i = 0; i < length; i++) {
+                Array.set(copy, i, copyValue(Array.get(value, i), copied));
+            }
+            return copy;
+        } else if (type.getName().startsWith(OUTPUT_PACKAGE) && !type.isEnum() && hasDefaultConstructor(type)) {
+            return copy(value, copied);
+        }
+        return value;
+    }
+
+    private static Collection<Object> copyElements(Collection<?> collection, Collection<Object> copy,
+            Map<Object, Object> copied) {
+        copied.put(collection, copy);
+        for (Object element : collection) {
+            copy.add(copyValue(element, copied));
+        }
+        return copy;
+    }
+
+    private static Map<Object, Object> copyEntries(Map<?, ?> map, Map<Object, Object> copy,
+            Map<Object, Object> copied) {
+        copied.put(map, copy);
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            copy.put(entry.getKey(), copyValue(entry.getValue(), copied));
+        }
+        return copy;
+    }
+
+    private static boolean hasDefaultConstructor(Class<?> type) {
+        try {
+            type.getDeclaredConstructor();
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private void notifyRefreshListeners() {
+        for (Runnable listener : refreshListeners) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                LOGGER.warn("Could not notify metadata catalog listener.", e);
+            }
+        }
+    }
+
+    private static final class Snapshot {
+
+        private final Supplier<? extends List<?>> loader;
+
+        private volatile List<?> outputs;
+
+        Snapshot(Supplier<? extends List<?>> loader) {
+            this.loader = loader;
+            reload();
+        }
+
+        void reload() {
+            outputs = Collections.unmodifiableList(new ArrayList<>(loader.get()));
+        }
+    }
+
+    private static final class SnapshotKey {
+
+        private final String repository;
+
+        private final boolean expanded;
+
+        private final String parameters;
+
+        private final String databaseSrid;
+
+        SnapshotKey(Class<?> repository, boolean expanded, DbQuery query) {
+            this.repository = repository.getName();
+            this.expanded = expanded;
+            this.parameters = query.getParameters().toString();
+            this.databaseSrid = query.getDatabaseSridCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(repository, expanded, parameters, databaseSrid);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof SnapshotKey)) {
+                return false;
+            }
+            SnapshotKey other = (SnapshotKey) obj;
+            return expanded == other.expanded && Objects.equals(repository, other.repository)
+                    && Objects.equals(parameters, other.parameters)
+                    && Objects.equals(databaseSrid, other.databaseSrid);
+        }
+
+        @Override
+        public String toString() {
+            return repository + (expanded ? "[expanded]" : "[condensed]") + " " + parameters;
+        }
+    }
+
+}
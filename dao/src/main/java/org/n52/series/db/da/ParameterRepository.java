@@ -32,6 +32,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.hibernate.Session;
@@ -46,12 +47,16 @@ import org.n52.series.spi.search.SearchResult;
 import org.n52.web.exception.ResourceNotFoundException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 
 public abstract class ParameterRepository<E extends DescribableEntity, O extends ParameterOutput>
-        extends SessionAwareRepository implements SearchableRepository, OutputAssembler<O> {
+        extends SessionAwareRepository implements SearchableRepository, IndexableRepository, OutputAssembler<O> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ParameterRepository.class);
 
+    @Autowired(required = false)
+    private MetadataCatalog metadataCatalog;
+
     protected abstract O prepareEmptyParameterOutput();
 
     protected abstract SearchResult createEmptySearchResult(String id, String label, String baseUrl);
@@ -72,6 +77,12 @@ public abstract class ParameterRepository<E extends DescribableEntity, O extends
 
     @Override
     public List<O> getAllCondensed(DbQuery query) {
+        return metadataCatalog != null
+                ? metadataCatalog.get(getClass(), false, query, () -> loadAllCondensed(query))
+                : loadAllCondensed(query);
+    }
+
+    private List<O> loadAllCondensed(DbQuery query) {
         Session session = getSession();
         try {
             return getAllCondensed(query, session);
@@ -92,9 +103,7 @@ public abstract class ParameterRepository<E extends DescribableEntity, O extends
     }
 
     protected List<O> createCondensed(Collection<E> allInstances, DbQuery query, Session session) {
-        List<O> result = allInstances.parallelStream().map(entity -> createCondensed(entity, query, session))
-                .filter(Objects::nonNull).collect(Collectors.toList());
-        return result;
+        return mapToOutputs(allInstances, entity -> createCondensed(entity, query, session));
     }
 
     protected O createCondensed(E entity, DbQuery query, Session session) {
@@ -121,6 +130,12 @@ public abstract class ParameterRepository<E extends DescribableEntity, O extends
 
     @Override
     public List<O> getAllExpanded(DbQuery query) {
+        return metadataCatalog != null
+                ? metadataCatalog.get(getClass(), true, query, () -> loadAllExpanded(query))
+                : loadAllExpanded(query);
+    }
+
+    private List<O> loadAllExpanded(DbQuery query) {
         Session session = getSession();
         try {
             return getAllExpanded(query, session);
@@ -145,12 +160,26 @@ public abstract class ParameterRepository<E extends DescribableEntity, O extends
     protected List<O> createExpanded(Collection<E> allInstances, DbQuery query, Session session)
             throws DataAccessException {
         LOGGER.debug("Entities: " + allInstances.size());
-        List<O> result = allInstances.parallelStream().map(e -> createExpanded(e, query, session))
-                .filter(Objects::nonNull).collect(Collectors.toList());
+        List<O> result = mapToOutputs(allInstances, e -> createExpanded(e, query, session));
         LOGGER.debug("Ouput: " + result.size());
         return result;
     }
 
+    /**
+     * Maps the given entities to outputs on the calling thread. Entities mapped to <code>null</code> are
+     * skipped. Mapping may initialize lazy associations through the entities' session, which is not
+     * thread-safe, so it must not run in parallel.
+     *
+     * @param entities
+     *        the entities
+     * @param mapper
+     *        maps an entity to its output
+     * @return the outputs in order of the entities
+     */
+    protected List<O> mapToOutputs(Collection<E> entities, Function<E, O> mapper) {
+        return entities.stream().map(mapper).filter(Objects::nonNull).collect(Collectors.toList());
+    }
+
     protected List<E> getAllInstances(DbQuery parameters, Session session) {
         long start = System.currentTimeMillis();
         try {
@@ -195,7 +224,7 @@ public abstract class ParameterRepository<E extends DescribableEntity, O extends
     public Collection<SearchResult> searchFor(IoParameters parameters) {
         Session session = getSession();
         try {
-            SearchableDao<E> dao = createSearchableDao(session);
+            SearchableDao<E> dao = getSearchableDao(createDao(session), createSearchableDao(session), session);
             DbQuery query = getDbQuery(parameters);
             List<E> found = dao.find(query);
             return convertToSearchResults(found, query);
@@ -204,6 +233,24 @@ public abstract class ParameterRepository<E extends DescribableEntity, O extends
         }
     }
 
+    @Override
+    public List<SearchDocument> getSearchDocuments(Collection<String> locales) {
+        Session session = getSession();
+        try {
+            DbQuery query = getDbQuery(IoParameters.createDefaults());
+            return getAllInstances(query, session).stream()
+                    .map(entity -> SearchDocument.of(entity, locales))
+                    .collect(Collectors.toList());
+        } finally {
+            returnSession(session);
+        }
+    }
+
+    @Override
+    public SearchResult createSearchResult(SearchDocument document, DbQuery query) {
+        return createEmptySearchResult(document.getId(), document.getLabel(query.getLocale()), query.getHrefBase());
+    }
+
     protected List<SearchResult> convertToSearchResults(List<E> found, DbQuery query) {
         String locale = query.getLocale();
         String hrefBase = query.getHrefBase();
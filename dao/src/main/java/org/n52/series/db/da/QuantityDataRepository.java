@@ -296,19 +296,16 @@ public class QuantityDataRepository
         return assembleData(dataset.getId(), query, session);
     }
 
+    @Override
+    protected Class<QuantityDataEntity> getDataEntityType() {
+        return QuantityDataEntity.class;
+    }
+
     @Override
     protected Data<QuantityValue> assembleData(Long dataset, DbQuery query, Session session) {
         // TODO: How to handle observations with detection limit? Currentl, null
         // is returned a filtered
-        return assembleData(createDataDao(session).getAllInstancesFor(dataset, query), query);
-    }
-
-    private Data<QuantityValue> assembleData(List<QuantityDataEntity> list, DbQuery query) {
-        Data<QuantityValue> result = new Data<>();
-        list.stream().filter(Objects::nonNull)
-                .map(observation -> assembleDataValue(observation, observation.getDataset(), query))
-                .filter(Objects::nonNull).forEachOrdered(result::addNewValue);
-        return result;
+        return assembleData(getObservations(dataset, query, session), query);
     }
 
     private QuantityValue[] expandToInterval(BigDecimal value, DatasetEntity dataset, DbQuery query) {
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2015-2021 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.da;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.n52.series.db.beans.DescribableEntity;
+
+/**
+ * Searchable snapshot of an entity, i.e. its id, its name and its labels in all indexed locales. Search
+ * documents are detached from any session and can be kept in memory.
+ * <p>
+ * Like the {@code find} queries of the repositories, documents are matched by name only. Labels are kept to
+ * present the results in the requested locale.
+ */
+public final class SearchDocument {
+
+    private final String id;
+
+    private final String name;
+
+    private final String term;
+
+    private final Map<String, String> labels;
+
+    public SearchDocument(String id, String name, Map<String, String> labels) {
+        this.id = id;
+        this.name = name;
+        this.term = name != null
+                ? name.toLowerCase(Locale.ROOT)
+                : "";
+        this.labels = Collections.unmodifiableMap(new LinkedHashMap<>(labels));
+    }
+
+    public static SearchDocument of(DescribableEntity entity, Collection<String> locales) {
+        Map<String, String> labels = new LinkedHashMap<>();
+        for (String locale : locales) {
+            String label = entity.getLabelFrom(locale);
+            if (label != null) {
+                labels.put(locale, label);
+            }
+        }
+        return new SearchDocument(Long.toString(entity.getId()), entity.getName(), labels);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @param locale
+     *        the requested (indexed) locale
+     * @return the label of the given locale, or the name if there is none
+     */
+    public String getLabel(String locale) {
+        String label = labels.get(locale);
+        return label != null ? label : name;
+    }
+
+    /**
+     * @return the lower case name
+     */
+    public String getTerm() {
+        return term;
+    }
+
+    /**
+     * @param searchTerm
+     *        the lower case search term
+     * @return {@code true} if the name contains the given term
+     */
+    public boolean matches(String searchTerm) {
+        return term.contains(searchTerm);
+    }
+
+}
@@ -65,9 +65,12 @@ import org.n52.series.db.beans.PlatformEntity;
 import org.n52.series.db.beans.ProcedureEntity;
 import org.n52.series.db.beans.ServiceEntity;
 import org.n52.series.db.da.mapper.MapperFactory;
+import org.n52.series.db.dao.AbstractDao;
 import org.n52.series.db.dao.DbQuery;
 import org.n52.series.db.dao.DbQueryFactory;
 import org.n52.series.db.dao.DefaultDbQueryFactory;
+import org.n52.series.db.dao.PostgresTextSearch;
+import org.n52.series.db.dao.SearchableDao;
 import org.n52.web.exception.BadRequestException;
 import org.n52.web.exception.ResourceNotFoundException;
 import org.opengis.referencing.FactoryException;
@@ -95,6 +98,9 @@ public abstract class SessionAwareRepository {
     @Autowired
     private HibernateSessionStore sessionStore;
 
+    @Autowired(required = false)
+    private PostgresTextSearch textSearch;
+
     public DbQueryFactory getDbQueryFactory() {
         return dbQueryFactory != null ? dbQueryFactory : new DefaultDbQueryFactory();
     }
@@ -129,11 +135,15 @@ public abstract class SessionAwareRepository {
         } else {
             String srid = query.getDatabaseSridCode();
             geometryEntity.setGeometryFactory(createGeometryFactory(srid));
-            try {
-                return getCrsUtils().transformOuterToInner(geometryEntity.getGeometry(), srid);
-            } catch (FactoryException | TransformException e) {
-                throw new DataAccessException("Error while creating geometry!", e);
-            }
+            return transformGeometry(geometryEntity.getGeometry(), srid);
+        }
+    }
+
+    private Geometry transformGeometry(Geometry geometry, String srid) {
+        try {
+            return getCrsUtils().transformOuterToInner(geometry, srid);
+        } catch (FactoryException | TransformException e) {
+            throw new DataAccessException("Error while creating geometry!", e);
         }
     }
 
@@ -142,6 +152,13 @@ public abstract class SessionAwareRepository {
         return srsId == null ? new GeometryFactory(pm) : new GeometryFactory(pm, CRSUtils.getSrsIdFrom(srsId));
     }
 
+    protected <E> SearchableDao<E> getSearchableDao(AbstractDao<E> dao, SearchableDao<E> fallback,
+            Session session) {
+        return textSearch != null
+                ? textSearch.createSearchableDao(dao, fallback, session)
+                : fallback;
+    }
+
     protected Long parseId(String id) throws BadRequestException {
         try {
             return Long.parseLong(id);
@@ -155,6 +172,13 @@ public abstract class SessionAwareRepository {
         sessionStore.returnSession(session);
     }
 
+    /**
+     * @return whether bulk reads shall use stateless sessions
+     */
+    public boolean isStatelessReads() {
+        return sessionStore.isStatelessReads();
+    }
+
     public Session getSession() {
         try {
             return sessionStore.getSession();
@@ -281,7 +305,11 @@ public abstract class SessionAwareRepository {
     }
 
     protected Geometry createGeometry(AbstractFeatureEntity<?> featureEntity, DbQuery query) {
-        return featureEntity.isSetGeometry() ? getGeometry(featureEntity.getGeometryEntity(), query) : null;
+        if (mapperFactory == null) {
+            return featureEntity.isSetGeometry() ? getGeometry(featureEntity.getGeometryEntity(), query) : null;
+        }
+        // shares the transformed geometry cache of the feature mapper
+        return mapperFactory.getFeatureMapper().createGeometry(featureEntity, query);
     }
 
     private void assertServiceAvailable(DescribableEntity entity) throws IllegalStateException {
@@ -190,17 +190,13 @@ public class StationRepository extends SessionAwareRepository
 
         String id = Long.toString(entity.getId());
         String label = entity.getLabelFrom(query.getLocale());
-        Geometry geometry = getGeometry(entity, query);
+        Geometry geometry = createGeometry(entity, query);
         result.setId(id);
         result.setValue(StationOutput.PROPERTIES, label, parameters, result::setLabel);
         result.setValue(StationOutput.GEOMETRY, geometry, parameters, result::setGeometry);
         return result;
     }
 
-    private Geometry getGeometry(FeatureEntity featureEntity, DbQuery query) {
-        return featureEntity.isSetGeometry() ? getGeometry(featureEntity.getGeometryEntity(), query) : null;
-    }
-
     private DbQuery addPointLocationOnlyRestriction(DbQuery query) {
         return dbQueryFactory.createFrom(query.getParameters().extendWith("geometryTypes", "Point"));
     }
@@ -37,7 +37,6 @@ import org.n52.series.db.DataRepositoryComponent;
 import org.n52.series.db.beans.DatasetEntity;
 import org.n52.series.db.beans.ServiceEntity;
 import org.n52.series.db.beans.TextDataEntity;
-import org.n52.series.db.dao.DataDao;
 import org.n52.series.db.dao.DbQuery;
 
 @DataRepositoryComponent(value = "text", datasetEntityType = DatasetEntity.class)
@@ -48,11 +47,15 @@ public class TextDataRepository extends AbstractDataRepository<DatasetEntity, Te
         return new TextValue();
     }
 
+    @Override
+    protected Class<TextDataEntity> getDataEntityType() {
+        return TextDataEntity.class;
+    }
+
     @Override
     protected Data<TextValue> assembleData(Long dataset, DbQuery query, Session session) {
         Data<TextValue> result = new Data<>();
-        DataDao<TextDataEntity> dao = new DataDao<>(session);
-        List<TextDataEntity> observations = dao.getAllInstancesFor(dataset, query);
+        List<TextDataEntity> observations = getObservations(dataset, query, session);
         for (TextDataEntity observation : observations) {
             if (observation != null) {
                 result.addNewValue(assembleDataValue(observation, observation.getDataset(), query));
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2015-2021 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.da;
+
+import java.util.Objects;
+import java.util.function.UnaryOperator;
+
+import org.locationtech.jts.geom.Geometry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Bounded cache of already transformed feature geometries. Entries are keyed by feature id and the CRS the
+ * stored geometry has been transformed to. Each entry keeps the stored geometry it has been created from, so
+ * an entry gets replaced as soon as the geometry (or its CRS) of a feature changes in the database.
+ */
+public class TransformedGeometryCache {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransformedGeometryCache.class);
+
+    private static final int DEFAULT_MAX_SIZE = 10000;
+
+    private volatile Cache<CacheKey, CacheEntry> cache = createCache(DEFAULT_MAX_SIZE);
+
+    private volatile boolean enabled = true;
+
+    public void setMaxSize(int maxSize) {
+        this.cache = createCache(maxSize);
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the transformed geometry for the given feature. The transformation is only applied if no entry
+     * exists yet or if the stored geometry has changed since the entry was created.
+     *
+     * @param featureId
+     *        the feature id
+     * @param targetCrs
+     *        the CRS the transformation results in
+     * @param stored
+     *        the geometry as stored in the database
+     * @param transformation
+     *        transforms the stored geometry
+     * @return the transformed geometry
+     */
+    public Geometry get(Long featureId, String targetCrs, Geometry stored, UnaryOperator<Geometry> transformation) {
+        if (!enabled || featureId == null || stored == null) {
+            return transformation.apply(stored);
+        }
+        CacheKey key = new CacheKey(featureId, targetCrs);
+        CacheEntry entry = cache.getIfPresent(key);
+        if (entry == null || !entry.isCreatedFrom(stored)) {
+            LOGGER.trace("Transform geometry of feature '{}' to '{}'", featureId, targetCrs);
+            Geometry transformed = transformation.apply(stored);
+            if (transformed == null) {
+                return null;
+            }
+            entry = new CacheEntry(stored.copy(), transformed);
+            cache.put(key, entry);
+        }
+        return entry.geometry.copy();
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.size();
+    }
+
+    private static Cache<CacheKey, CacheEntry> createCache(int maxSize) {
+        return CacheBuilder.newBuilder().maximumSize(Math.max(0, maxSize)).build();
+    }
+
+    private static final class CacheKey {
+
+        private final Long featureId;
+
+        private final String crs;
+
+        CacheKey(Long featureId, String crs) {
+            this.featureId = featureId;
+            this.crs = crs;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(featureId, crs);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) obj;
+            return Objects.equals(featureId, other.featureId) && Objects.equals(crs, other.crs);
+        }
+    }
+
+    private static final class CacheEntry {
+
+        private final Geometry source;
+
+        private final Geometry geometry;
+
+        CacheEntry(Geometry source, Geometry geometry) {
+            this.source = source;
+            this.geometry = geometry;
+        }
+
+        boolean isCreatedFrom(Geometry stored) {
+            return source.getSRID() == stored.getSRID() && source.equalsExact(stored);
+        }
+    }
+
+}
@@ -55,6 +55,7 @@ import org.n52.io.response.ServiceOutput;
 import org.n52.io.response.TimeOutput;
 import org.n52.io.response.dataset.DatasetParameters;
 import org.n52.series.db.DataAccessException;
+import org.n52.series.db.beans.AbstractFeatureEntity;
 import org.n52.series.db.beans.CategoryEntity;
 import org.n52.series.db.beans.DatasetEntity;
 import org.n52.series.db.beans.DescribableEntity;
@@ -64,6 +65,7 @@ import org.n52.series.db.beans.PhenomenonEntity;
 import org.n52.series.db.beans.PlatformEntity;
 import org.n52.series.db.beans.ProcedureEntity;
 import org.n52.series.db.beans.ServiceEntity;
+import org.n52.series.db.da.TransformedGeometryCache;
 import org.n52.series.db.dao.DbQuery;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.operation.TransformException;
@@ -75,6 +77,8 @@ public abstract class AbstractOuputMapper<T extends ParameterOutput, S extends D
 
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractOuputMapper.class);
     private static final String OFFSET_REGEX = "([+-](?:2[0-3]|[01][0-9]):[0-5][0-9])";
+    // geometries get transformed from the database CRS to WGS 84 (forced x/y axis order)
+    private static final String INNER_CRS = "EPSG:4326";
     private CRSUtils crsUtils = CRSUtils.createEpsgForcedXYAxisOrder();
 
     private MapperFactory mapperFactory;
@@ -151,11 +155,27 @@ public abstract class AbstractOuputMapper<T extends ParameterOutput, S extends D
         } else {
             String srid = query.getDatabaseSridCode();
             geometryEntity.setGeometryFactory(createGeometryFactory(srid));
-            try {
-                return crsUtils.transformOuterToInner(geometryEntity.getGeometry(), srid);
-            } catch (FactoryException | TransformException e) {
-                throw new DataAccessException("Error while creating geometry!", e);
-            }
+            return transformGeometry(geometryEntity.getGeometry(), srid);
+        }
+    }
+
+    protected Geometry getGeometry(AbstractFeatureEntity<?> featureEntity, DbQuery query) {
+        GeometryEntity geometryEntity = featureEntity.getGeometryEntity();
+        TransformedGeometryCache geometryCache = getMapperFactory().getGeometryCache();
+        if (geometryCache == null || geometryEntity == null) {
+            return getGeometry(geometryEntity, query);
+        }
+        String srid = query.getDatabaseSridCode();
+        geometryEntity.setGeometryFactory(createGeometryFactory(srid));
+        return geometryCache.get(featureEntity.getId(), INNER_CRS, geometryEntity.getGeometry(),
+                geometry -> transformGeometry(geometry, srid));
+    }
+
+    private Geometry transformGeometry(Geometry geometry, String srid) {
+        try {
+            return crsUtils.transformOuterToInner(geometry, srid);
+        } catch (FactoryException | TransformException e) {
+            throw new DataAccessException("Error while creating geometry!", e);
         }
     }
 
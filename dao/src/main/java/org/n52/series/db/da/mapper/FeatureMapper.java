@@ -134,8 +134,8 @@ public class FeatureMapper extends AbstractOuputMapper<FeatureOutput, FeatureEnt
         return timeseriesOutputs;
     }
 
-    protected Geometry createGeometry(AbstractFeatureEntity<?> featureEntity, DbQuery query) {
-        return featureEntity.isSetGeometry() ? getGeometry(featureEntity.getGeometryEntity(), query) : null;
+    public Geometry createGeometry(AbstractFeatureEntity<?> featureEntity, DbQuery query) {
+        return featureEntity.isSetGeometry() ? getGeometry(featureEntity, query) : null;
     }
 
 }
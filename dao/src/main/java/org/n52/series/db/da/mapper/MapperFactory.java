@@ -35,6 +35,7 @@ import org.n52.io.response.dataset.DatasetOutput;
 import org.n52.series.db.beans.DescribableEntity;
 import org.n52.series.db.beans.ServiceEntity;
 import org.n52.series.db.da.EntityCounter;
+import org.n52.series.db.da.TransformedGeometryCache;
 import org.n52.series.db.dao.DbQuery;
 import org.n52.series.db.dao.DbQueryFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -53,6 +54,9 @@ public class MapperFactory {
     @Autowired
     private DefaultIoFactory<DatasetOutput<AbstractValue<?>>, AbstractValue<?>> ioFactoryCreator;
 
+    @Autowired(required = false)
+    private TransformedGeometryCache geometryCache;
+
     public FeatureMapper getFeatureMapper() {
         return new FeatureMapper(this);
     }
@@ -102,6 +106,10 @@ public class MapperFactory {
         return ioFactoryCreator;
     }
 
+    protected TransformedGeometryCache getGeometryCache() {
+        return geometryCache;
+    }
+
     protected DbQuery getDbQuery(IoParameters parameters) {
         return dbQueryFactory.createFrom(parameters);
     }
@@ -108,22 +108,27 @@ public class ServiceMapper extends AbstractOuputMapper<ServiceOutput, ServiceEnt
             ParameterCount quantities = new ServiceOutput.ParameterCount();
             DbQuery serviceQuery = getMapperFactory().getDbQuery(parameters
                     .extendWith(Parameters.SERVICES, service.getId()).removeAllOf("offset").removeAllOf("limit"));
-            quantities.setOfferingsSize(getMapperFactory().getCounter().countOfferings(serviceQuery));
-            quantities.setProceduresSize(getMapperFactory().getCounter().countProcedures(serviceQuery));
-            quantities.setCategoriesSize(getMapperFactory().getCounter().countCategories(serviceQuery));
-            quantities.setPhenomenaSize(getMapperFactory().getCounter().countPhenomena(serviceQuery));
-            quantities.setFeaturesSize(getMapperFactory().getCounter().countFeatures(serviceQuery));
+            Map<String, Long> counts = getMapperFactory().getCounter().countAll(serviceQuery, EntityCounter.OFFERINGS,
+                    EntityCounter.PROCEDURES, EntityCounter.CATEGORIES, EntityCounter.PHENOMENA,
+                    EntityCounter.FEATURES, EntityCounter.PLATFORMS, EntityCounter.DATASETS,
+                    EntityCounter.TIMESERIES, EntityCounter.INDIVIDUAL_OBSERVATIONS, EntityCounter.PROFILES,
+                    EntityCounter.TRAJECTORIES, EntityCounter.SAMPLINGS, EntityCounter.MEASURING_PROGRAMS);
+            quantities.setOfferingsSize(counts.get(EntityCounter.OFFERINGS));
+            quantities.setProceduresSize(counts.get(EntityCounter.PROCEDURES));
+            quantities.setCategoriesSize(counts.get(EntityCounter.CATEGORIES));
+            quantities.setPhenomenaSize(counts.get(EntityCounter.PHENOMENA));
+            quantities.setFeaturesSize(counts.get(EntityCounter.FEATURES));
 
             // if (parameters.shallBehaveBackwardsCompatible()) {
             // quantities.setTimeseriesSize(counter.countTimeseries());
             // quantities.setStationsSize(counter.countStations());
             // } else {
-            quantities.setPlatformsSize(getMapperFactory().getCounter().countPlatforms(serviceQuery));
-            quantities.setDatasets(createDatasetCount(getMapperFactory().getCounter(), serviceQuery));
+            quantities.setPlatformsSize(counts.get(EntityCounter.PLATFORMS));
+            quantities.setDatasets(createDatasetCount(counts));
 
             // TODO
-            quantities.setSamplingsSize(getMapperFactory().getCounter().countSamplings(serviceQuery));
-            quantities.setMeasuringProgramsSize(getMapperFactory().getCounter().countMeasuringPrograms(serviceQuery));
+            quantities.setSamplingsSize(counts.get(EntityCounter.SAMPLINGS));
+            quantities.setMeasuringProgramsSize(counts.get(EntityCounter.MEASURING_PROGRAMS));
             // }
             return quantities;
         } catch (DataAccessException e) {
@@ -144,13 +149,13 @@ public class ServiceMapper extends AbstractOuputMapper<ServiceOutput, ServiceEnt
         return mimeTypesByDatasetTypes;
     }
 
-    private DatasetCount createDatasetCount(EntityCounter counter, DbQuery query) {
+    private DatasetCount createDatasetCount(Map<String, Long> counts) {
         DatasetCount datasetCount = new DatasetCount();
-        datasetCount.setTotalAmount(counter.countDatasets(query));
-        datasetCount.setAmountTimeseries(counter.countTimeseries(query));
-        datasetCount.setAmountIndividualObservations(counter.countIndividualObservations(query));
-        datasetCount.setAmountProfiles(counter.countProfiles(query));
-        datasetCount.setAmountTrajectories(counter.countTrajectories(query));
+        datasetCount.setTotalAmount(counts.get(EntityCounter.DATASETS));
+        datasetCount.setAmountTimeseries(counts.get(EntityCounter.TIMESERIES));
+        datasetCount.setAmountIndividualObservations(counts.get(EntityCounter.INDIVIDUAL_OBSERVATIONS));
+        datasetCount.setAmountProfiles(counts.get(EntityCounter.PROFILES));
+        datasetCount.setAmountTrajectories(counts.get(EntityCounter.TRAJECTORIES));
         return datasetCount;
     }
 
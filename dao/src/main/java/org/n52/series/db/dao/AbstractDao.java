@@ -58,6 +58,7 @@ import org.n52.io.request.IoParameters;
 import org.n52.io.request.Parameters;
 import org.n52.series.db.DataAccessException;
 import org.n52.series.db.DataModelUtil;
+import org.n52.series.db.QueryDeadline;
 import org.n52.series.db.beans.DatasetEntity;
 import org.n52.series.db.beans.DescribableEntity;
 import org.n52.series.db.beans.dataset.DatasetType;
@@ -71,6 +72,11 @@ public abstract class AbstractDao<T> implements GenericDao<T, Long> {
 
     protected static final String TRANSLATIONS_ALIAS = "translations";
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractDao.class);
+    /**
+     * Estimates below are counted exactly: the planner never estimates less than one row and small sets are
+     * cheap to count anyway.
+     */
+    private static final long MIN_ESTIMATE = 1000L;
 
     protected final Session session;
 
@@ -144,13 +150,53 @@ public abstract class AbstractDao<T> implements GenericDao<T, Long> {
         return (Long) result;
     }
 
+    /**
+     * Estimates the number of entities {@link #getCount(DbQuery)} would return from the query plan of the
+     * very same (filtered) criteria instead of counting them. Supported on PostgreSQL only.
+     *
+     * @param query
+     *        the query
+     * @return the estimated number of entities, or {@code null} if no (reliable) estimate is available
+     */
+    public Long getApproximateCount(DbQuery query) {
+        if (!DataModelUtil.isEntitySupported(getEntityClass(), session)) {
+            return null;
+        }
+        Criteria criteria = getDefaultCriteria(query).setProjection(Projections.id());
+        Long estimate = DataModelUtil.getEstimatedRowCount(criteria, session);
+        return estimate != null && estimate >= MIN_ESTIMATE ? estimate : null;
+    }
+
+    /**
+     * @param criteria
+     *        the search criteria, to add joins the returned property paths depend on
+     * @return the properties the search term of a search request is matched against
+     */
+    protected String[] getSearchProperties(Criteria criteria) {
+        return new String[] {
+            DescribableEntity.PROPERTY_NAME
+        };
+    }
+
+    /**
+     * Adds translations and the filters of the query to the criteria of a search request.
+     *
+     * @param criteria
+     *        the search criteria
+     * @param query
+     *        the search query
+     * @return the criteria
+     */
+    protected Criteria addSearchFilters(Criteria criteria, DbQuery query) {
+        return query.addFilters(criteria, getDatasetProperty(), session);
+    }
+
     protected <I extends I18nEntity> Criteria i18n(Class<I> clazz, Criteria criteria, DbQuery query) {
         return hasTranslation(query, clazz) ? query.addLocaleTo(criteria, clazz) : criteria;
     }
 
     private <I extends I18nEntity> boolean hasTranslation(DbQuery parameters, Class<I> clazz) {
-        Criteria i18nCriteria = session.createCriteria(clazz);
-        return parameters.checkTranslationForLocale(i18nCriteria);
+        return parameters.checkTranslationForLocale(clazz, session);
     }
 
     public Criteria getDefaultCriteria(DbQuery query) {
@@ -167,7 +213,7 @@ public abstract class AbstractDao<T> implements GenericDao<T, Long> {
 
     protected Criteria getDefaultCriteria(String alias, DbQuery query, Class<?> clazz) {
         String nonNullAlias = alias != null ? alias : getDefaultAlias();
-        Criteria criteria = session.createCriteria(clazz, nonNullAlias);
+        Criteria criteria = QueryDeadline.applyTo(session.createCriteria(clazz, nonNullAlias));
         criteria.setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY);
         addDatasetFilters(query, criteria);
         addMobileInsituFilter(getDatasetProperty(), criteria, query);
@@ -365,7 +411,7 @@ public abstract class AbstractDao<T> implements GenericDao<T, Long> {
                 }
             }
         }
-        return params != null ? new DbQuery(params) : query;
+        return params != null ? query.withParameters(params) : query;
     }
 
     protected List<String> toStringList(Collection<Long> set) {
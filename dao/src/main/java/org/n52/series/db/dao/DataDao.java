@@ -29,8 +29,11 @@
 package org.n52.series.db.dao;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.apache.commons.lang3.time.DateUtils;
@@ -128,6 +131,34 @@ public class DataDao<T extends DataEntity> extends AbstractDao<T> {
         return criteria.list();
     }
 
+    /**
+     * Retrieves the observations of a dataset grouped by their result time. All groups are loaded with a
+     * single query ordered by result time and sampling time. Unless particular result times are requested,
+     * observations of all result times are returned.
+     *
+     * @param dataset
+     *        the dataset the observations belong to
+     * @param q
+     *        some query parameters to restrict result
+     * @return the observations per result time, both in ascending order
+     */
+    @SuppressWarnings("unchecked")
+    public Map<Date, List<T>> getAllInstancesByResultTime(Long dataset, DbQuery q) {
+        DbQuery query = checkLevelParameterForHierarchyQuery(q);
+        LOGGER.debug("get all instances by result time for series '{}': {}", dataset, query);
+        Criteria criteria = getDefaultCriteria(query, Order.asc(DataEntity.PROPERTY_RESULT_TIME))
+                .addOrder(DEFAULT_ORDER)
+                .add(Restrictions.eq(DataEntity.PROPERTY_DATASET_ID, dataset))
+                .add(Restrictions.isNotNull(DataEntity.PROPERTY_RESULT_TIME));
+        query.addTimespanTo(criteria);
+        Map<Date, List<T>> groups = new LinkedHashMap<>();
+        for (T observation : (List<T>) criteria.list()) {
+            groups.computeIfAbsent(observation.getResultTime(), k -> new ArrayList<>())
+                  .add(observation);
+        }
+        return groups;
+    }
+
     public List<DataEntity<?>> getAllInstancesFor(Set<Long> series, DbQuery query) {
         Criteria criteria = getDefaultCriteria(query)
                 .add(Restrictions.in(DataEntity.PROPERTY_DATASET_ID, series))
@@ -172,9 +203,15 @@ public class DataDao<T extends DataEntity> extends AbstractDao<T> {
         return getDefaultCriteria(query, DEFAULT_ORDER);
     }
 
+    /**
+     * @return a new criteria for the entity type, all criteria of this dao are built upon
+     */
+    protected Criteria createCriteria() {
+        return session.createCriteria(entityType);
+    }
+
     private Criteria getDefaultCriteria() {
-        Criteria criteria =
-                session.createCriteria(entityType).add(Restrictions.eq(DataEntity.PROPERTY_DELETED, Boolean.FALSE));
+        Criteria criteria = createCriteria().add(Restrictions.eq(DataEntity.PROPERTY_DELETED, Boolean.FALSE));
         criteria.setResultTransformer(CriteriaSpecification.DISTINCT_ROOT_ENTITY);
         return criteria;
     }
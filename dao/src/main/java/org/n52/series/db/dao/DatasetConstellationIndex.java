@@ -0,0 +1,512 @@
+/*
+ * Copyright (C) 2015-2021 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.dao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.Criteria;
+import org.hibernate.Session;
+import org.hibernate.criterion.ProjectionList;
+import org.hibernate.criterion.Projections;
+import org.n52.io.request.IoParameters;
+import org.n52.series.db.DataModelUtil;
+import org.n52.series.db.HibernateSessionStore;
+import org.n52.series.db.beans.DatasetEntity;
+import org.n52.series.db.beans.DescribableEntity;
+import org.n52.series.db.beans.FeatureEntity;
+import org.n52.series.db.beans.HierarchicalEntity;
+import org.n52.series.db.beans.OfferingEntity;
+import org.n52.series.db.beans.ProcedureEntity;
+import org.n52.series.db.da.MetadataCatalog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * In-memory index of the dataset constellations. Maps each procedure, phenomenon, offering, feature, category
+ * and platform id to the sorted ids of the datasets referencing it. Filter combinations are resolved by merging
+ * and intersecting the sorted ids, so {@link DbQuery#addDetachedFilters(String, Criteria, Session)} can
+ * restrict on a precomputed set of ids instead of building nested subqueries. Memory scales with the number of
+ * dataset references, not with the highest dataset id.
+ *
+ * The index is rebuilt in the background and each time the {@link MetadataCatalog} gets refreshed or
+ * invalidated. Until the first build has completed the index is not ready and filters are resolved by the
+ * database as before. Filters referring to ids the index does not know (e.g. datasets, procedures or features
+ * added since the last build) are resolved by the database, too.
+ */
+public class DatasetConstellationIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatasetConstellationIndex.class);
+
+    private static final long DEFAULT_REFRESH_INTERVAL = 600;
+
+    private static final int DEFAULT_MAX_RESOLVED_IDS = 1000;
+
+    enum Dimension {
+        PROCEDURE(DatasetEntity.PROPERTY_PROCEDURE),
+        PHENOMENON(DatasetEntity.PROPERTY_PHENOMENON),
+        OFFERING(DatasetEntity.PROPERTY_OFFERING),
+        FEATURE(DatasetEntity.PROPERTY_FEATURE),
+        CATEGORY(DatasetEntity.PROPERTY_CATEGORY),
+        PLATFORM(DatasetEntity.PROPERTY_PLATFORM);
+
+        private final String property;
+
+        Dimension(String property) {
+            this.property = property;
+        }
+
+        static Dimension fromProperty(String property) {
+            for (Dimension dimension : values()) {
+                if (dimension.property.equals(property)) {
+                    return dimension;
+                }
+            }
+            return null;
+        }
+    }
+
+    @Autowired
+    private HibernateSessionStore sessionStore;
+
+    @Autowired(required = false)
+    private MetadataCatalog metadataCatalog;
+
+    private volatile Snapshot snapshot;
+
+    private ScheduledExecutorService scheduler;
+
+    private boolean enabled;
+
+    private long refreshInterval = DEFAULT_REFRESH_INTERVAL;
+
+    private int maxResolvedIds = DEFAULT_MAX_RESOLVED_IDS;
+
+    public void init() {
+        if (enabled) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "dataset-constellation-index");
+                thread.setDaemon(true);
+                return thread;
+            });
+            if (refreshInterval > 0) {
+                scheduler.scheduleWithFixedDelay(this::rebuild, 0, refreshInterval, TimeUnit.SECONDS);
+            } else {
+                scheduler.execute(this::rebuild);
+            }
+            if (metadataCatalog != null) {
+                metadataCatalog.addRefreshListener(() -> scheduler.execute(this::rebuild));
+            }
+        }
+    }
+
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param refreshInterval
+     *        the interval (in seconds) to rebuild the index, values &lt;= 0 build it once at startup only
+     */
+    public void setRefreshInterval(long refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+
+    /**
+     * @param maxResolvedIds
+     *        the maximum number of resolved dataset ids passed to the database as id restriction. Larger
+     *        results are left to the subquery.
+     */
+    public void setMaxResolvedIds(int maxResolvedIds) {
+        this.maxResolvedIds = maxResolvedIds;
+    }
+
+    public int getMaxResolvedIds() {
+        return maxResolvedIds;
+    }
+
+    public boolean isReady() {
+        return enabled && snapshot != null;
+    }
+
+    /**
+     * Rebuilds the index from the database. A failing build keeps the previous index.
+     */
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        Session session = sessionStore.getSession();
+        try {
+            snapshot = Snapshot.create(session);
+            LOGGER.debug("Building dataset constellation index took {} ms", System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not build dataset constellation index.", e);
+        } finally {
+            sessionStore.returnSession(session);
+        }
+    }
+
+    /**
+     * Resolves the dataset filters of the given query against the index.
+     *
+     * @param query
+     *        the query
+     * @param datasetProperty
+     *        the dataset property to project the matching datasets on, or an empty string for the dataset
+     *        ids themselves
+     * @return the matching ids, or {@code null} if the filter cannot be resolved by the index
+     */
+    public Set<Long> resolve(DbQuery query, String datasetProperty) {
+        Snapshot current = snapshot;
+        if (!enabled || current == null || !current.knows(query)) {
+            return null;
+        }
+        boolean projectOnDatasets = datasetProperty == null || datasetProperty.isEmpty();
+        Dimension dimension = Dimension.fromProperty(datasetProperty);
+        if (!projectOnDatasets && dimension == null) {
+            return null;
+        }
+        long[] datasets = resolve(current, query);
+        if (projectOnDatasets && datasets.length > maxResolvedIds) {
+            return null;
+        }
+        Set<Long> ids = new HashSet<>();
+        Map<Long, Long> memberOfDataset = projectOnDatasets ? null : current.memberOf.get(dimension);
+        for (long dataset : datasets) {
+            Long id = projectOnDatasets ? Long.valueOf(dataset) : memberOfDataset.get(dataset);
+            if (id != null) {
+                ids.add(id);
+                if (ids.size() > maxResolvedIds) {
+                    return null;
+                }
+            }
+        }
+        return ids;
+    }
+
+    private long[] resolve(Snapshot current, DbQuery query) {
+        IoParameters parameters = query.getParameters();
+        boolean hierarchy = query.isIncludeHierarchy();
+        long[] result = null;
+        result = intersect(result, current.match(Dimension.PHENOMENON, parameters.getPhenomena(), false));
+        result = intersect(result, current.match(Dimension.PROCEDURE, parameters.getProcedures(), hierarchy));
+        result = intersect(result, current.match(Dimension.OFFERING, parameters.getOfferings(), hierarchy));
+        result = intersect(result, current.match(Dimension.FEATURE, parameters.getFeatures(), hierarchy));
+        result = intersect(result, current.match(Dimension.CATEGORY, parameters.getCategories(), false));
+        result = intersect(result, current.match(Dimension.PLATFORM, parameters.getPlatforms(), false));
+        result = intersect(result, current.matchDatasets(parameters.getDatasets()));
+        return result != null ? result : current.all;
+    }
+
+    void setSnapshot(Snapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    /**
+     * @return the ids contained in both sorted arrays, or the other array if one of them is {@code null}
+     */
+    static long[] intersect(long[] left, long[] right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        long[] result = new long[Math.min(left.length, right.length)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < left.length && j < right.length) {
+            if (left[i] < right[j]) {
+                i++;
+            } else if (left[i] > right[j]) {
+                j++;
+            } else {
+                result[size++] = left[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    /**
+     * @return the sorted distinct ids of all given sorted arrays
+     */
+    static long[] union(List<long[]> sorted) {
+        if (sorted.size() == 1) {
+            return sorted.get(0);
+        }
+        Ids ids = new Ids();
+        sorted.forEach(ids::addAll);
+        return ids.toSortedArray();
+    }
+
+    static final class Snapshot {
+
+        private static final long[] EMPTY = new long[0];
+
+        private long[] all = EMPTY;
+
+        private final Map<Dimension, Map<Long, long[]>> members = new EnumMap<>(Dimension.class);
+
+        private final Map<Dimension, Map<Long, Long>> memberOf = new EnumMap<>(Dimension.class);
+
+        private final Map<Dimension, Map<Long, long[]>> viaParents = new EnumMap<>(Dimension.class);
+
+        // collected while building, released by freeze()
+        private Ids collectedDatasets = new Ids();
+
+        private Map<Dimension, Map<Long, Ids>> collectedMembers = new EnumMap<>(Dimension.class);
+
+        private Map<Dimension, Map<Long, Ids>> collectedChildren = new EnumMap<>(Dimension.class);
+
+        Snapshot() {
+            for (Dimension dimension : Dimension.values()) {
+                members.put(dimension, new HashMap<>());
+                memberOf.put(dimension, new HashMap<>());
+                viaParents.put(dimension, new HashMap<>());
+                collectedMembers.put(dimension, new HashMap<>());
+                collectedChildren.put(dimension, new HashMap<>());
+            }
+        }
+
+        static Snapshot create(Session session) {
+            Snapshot snapshot = new Snapshot();
+            snapshot.addDatasets(session);
+            snapshot.addParents(Dimension.PROCEDURE, ProcedureEntity.class, session);
+            snapshot.addParents(Dimension.OFFERING, OfferingEntity.class, session);
+            snapshot.addParents(Dimension.FEATURE, FeatureEntity.class, session);
+            return snapshot.freeze();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void addDatasets(Session session) {
+            ProjectionList projections = Projections.projectionList()
+                    .add(Projections.property(DescribableEntity.PROPERTY_ID));
+            for (Dimension dimension : Dimension.values()) {
+                String association = QueryUtils.createAssociation(dimension.property, DescribableEntity.PROPERTY_ID);
+                projections.add(Projections.property(association));
+            }
+            Criteria criteria = session.createCriteria(DatasetEntity.class).setProjection(projections);
+            for (Object[] row : (List<Object[]>) criteria.list()) {
+                Long[] memberIds = new Long[row.length - 1];
+                for (int i = 0; i < memberIds.length; i++) {
+                    memberIds[i] = (Long) row[i + 1];
+                }
+                addDataset((Long) row[0], memberIds);
+            }
+        }
+
+        /**
+         * @param datasetId
+         *        the dataset id
+         * @param memberIds
+         *        the ids of the dataset's members, in order of {@link Dimension#values()}
+         */
+        void addDataset(Long datasetId, Long... memberIds) {
+            Dimension[] dimensions = Dimension.values();
+            collectedDatasets.add(datasetId);
+            for (int i = 0; i < dimensions.length; i++) {
+                Long memberId = memberIds[i];
+                if (memberId != null) {
+                    collectedMembers.get(dimensions[i]).computeIfAbsent(memberId, id -> new Ids()).add(datasetId);
+                    memberOf.get(dimensions[i]).put(datasetId, memberId);
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void addParents(Dimension dimension, Class<?> clazz, Session session) {
+            if (!DataModelUtil.isPropertyNameSupported(HierarchicalEntity.PROPERTY_PARENTS, clazz, session)) {
+                return;
+            }
+            Criteria criteria = session.createCriteria(clazz, "e")
+                    .createAlias("e." + HierarchicalEntity.PROPERTY_PARENTS, "p")
+                    .setProjection(Projections.projectionList()
+                            .add(Projections.property("e." + DescribableEntity.PROPERTY_ID))
+                            .add(Projections.property("p." + DescribableEntity.PROPERTY_ID)));
+            List<Object[]> rows = (List<Object[]>) criteria.list();
+            for (Object[] row : rows) {
+                addParent(dimension, (Long) row[0], (Long) row[1]);
+            }
+        }
+
+        void addParent(Dimension dimension, Long childId, Long parentId) {
+            collectedChildren.get(dimension).computeIfAbsent(parentId, id -> new Ids()).add(childId);
+        }
+
+        /**
+         * Sorts the collected ids and releases all build state. Has to be called once after all datasets and
+         * parents have been added.
+         *
+         * @return this snapshot
+         */
+        Snapshot freeze() {
+            all = collectedDatasets.toSortedArray();
+            for (Dimension dimension : Dimension.values()) {
+                Map<Long, long[]> datasets = members.get(dimension);
+                collectedMembers.get(dimension).forEach((id, collected) -> datasets.put(id, collected.toSortedArray()));
+                Map<Long, long[]> viaParent = viaParents.get(dimension);
+                collectedChildren.get(dimension).forEach((parentId, children) -> {
+                    Ids ids = new Ids();
+                    for (long child : children.toSortedArray()) {
+                        ids.addAll(datasets.getOrDefault(child, EMPTY));
+                    }
+                    viaParent.put(parentId, ids.toSortedArray());
+                });
+            }
+            collectedDatasets = null;
+            collectedMembers = null;
+            collectedChildren = null;
+            return this;
+        }
+
+        /**
+         * @return if the index knows all ids referred to by the query's filters, otherwise the filters may
+         *         match datasets added after the index has been built
+         */
+        boolean knows(DbQuery query) {
+            IoParameters parameters = query.getParameters();
+            boolean hierarchy = query.isIncludeHierarchy();
+            return knows(Dimension.PHENOMENON, parameters.getPhenomena(), false)
+                    && knows(Dimension.PROCEDURE, parameters.getProcedures(), hierarchy)
+                    && knows(Dimension.OFFERING, parameters.getOfferings(), hierarchy)
+                    && knows(Dimension.FEATURE, parameters.getFeatures(), hierarchy)
+                    && knows(Dimension.CATEGORY, parameters.getCategories(), false)
+                    && knows(Dimension.PLATFORM, parameters.getPlatforms(), false)
+                    && knowsDatasets(parameters.getDatasets());
+        }
+
+        private boolean knows(Dimension dimension, Set<String> values, boolean includeParents) {
+            if (values == null || values.isEmpty()) {
+                return true;
+            }
+            for (Long id : QueryUtils.parseToIds(values)) {
+                if (!members.get(dimension).containsKey(id)
+                        && !(includeParents && viaParents.get(dimension).containsKey(id))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean knowsDatasets(Set<String> values) {
+            if (values == null || values.isEmpty()) {
+                return true;
+            }
+            for (Long id : QueryUtils.parseToIds(values)) {
+                if (id == null || Arrays.binarySearch(all, id) < 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        long[] match(Dimension dimension, Set<String> values, boolean includeParents) {
+            if (values == null || values.isEmpty()) {
+                return null;
+            }
+            List<long[]> matches = new ArrayList<>();
+            for (Long id : QueryUtils.parseToIds(values)) {
+                matches.add(members.get(dimension).getOrDefault(id, EMPTY));
+                if (includeParents) {
+                    matches.add(viaParents.get(dimension).getOrDefault(id, EMPTY));
+                }
+            }
+            return union(matches);
+        }
+
+        long[] matchDatasets(Set<String> values) {
+            if (values == null || values.isEmpty()) {
+                return null;
+            }
+            Ids matches = new Ids();
+            for (Long id : QueryUtils.parseToIds(values)) {
+                if (id != null && Arrays.binarySearch(all, id) >= 0) {
+                    matches.add(id);
+                }
+            }
+            return matches.toSortedArray();
+        }
+    }
+
+    /**
+     * Growable array of primitive ids, avoids boxing while the index is built.
+     */
+    private static final class Ids {
+
+        private long[] values = new long[4];
+
+        private int size;
+
+        void add(long id) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = id;
+        }
+
+        void addAll(long[] ids) {
+            if (size + ids.length > values.length) {
+                values = Arrays.copyOf(values, Math.max(size * 2, size + ids.length));
+            }
+            System.arraycopy(ids, 0, values, size, ids.length);
+            size += ids.length;
+        }
+
+        long[] toSortedArray() {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            int distinct = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                if (i == 0 || sorted[i] != sorted[i - 1]) {
+                    sorted[distinct++] = sorted[i];
+                }
+            }
+            return distinct == sorted.length ? sorted : Arrays.copyOf(sorted, distinct);
+        }
+    }
+
+}
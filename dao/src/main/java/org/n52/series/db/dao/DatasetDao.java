@@ -29,14 +29,18 @@
 package org.n52.series.db.dao;
 
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.stream.Collectors;
 
 import org.hibernate.Criteria;
 import org.hibernate.FetchMode;
 import org.hibernate.Session;
+import org.hibernate.criterion.Disjunction;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.internal.CriteriaImpl;
+import org.hibernate.internal.CriteriaImpl.Subcriteria;
 import org.hibernate.sql.JoinType;
 import org.hibernate.transform.ResultTransformer;
 import org.n52.series.db.DataAccessException;
@@ -45,8 +49,6 @@ import org.n52.series.db.DatasetTypesMetadata;
 import org.n52.series.db.beans.DatasetEntity;
 import org.n52.series.db.beans.DescribableEntity;
 import org.n52.series.db.beans.FeatureEntity;
-import org.n52.series.db.beans.OfferingEntity;
-import org.n52.series.db.beans.PhenomenonEntity;
 import org.n52.series.db.beans.ProcedureEntity;
 import org.n52.series.db.beans.dataset.DatasetType;
 import org.n52.series.db.beans.dataset.ObservationType;
@@ -70,6 +72,10 @@ public class DatasetDao<T extends DatasetEntity> extends AbstractDao<T> implemen
 
     private static final String PROCEDURE_PATH_ALIAS = "dsProcedure";
 
+    private static final String PHENOMENON_PATH_ALIAS = "dsPhenomenon";
+
+    private static final String OFFERING_PATH_ALIAS = "dsOffering";
+
     private static final String FIRST_OBSERVATION_ALIAS = "firstObservation";
     private static final String LAST_OBSERVATION_ALIAS = "lastObservation";
     private static final String PARAMETERS_ALIAS = "parameters";
@@ -104,16 +110,47 @@ public class DatasetDao<T extends DatasetEntity> extends AbstractDao<T> implemen
         addFetchModes(criteria, q);
         // default criteria performs join on procedure table
 
-        criteria.add(Restrictions.or(Restrictions.ilike(PhenomenonEntity.PROPERTY_NAME, searchTerm),
-                                     Restrictions.ilike(ProcedureEntity.PROPERTY_NAME, searchTerm),
-                                     Restrictions.ilike(OfferingEntity.PROPERTY_NAME, searchTerm),
-                                     Restrictions.ilike(FeatureEntity.PROPERTY_NAME, searchTerm)));
+        Disjunction match = Restrictions.disjunction();
+        for (String property : getSearchProperties(criteria)) {
+            match.add(Restrictions.ilike(property, searchTerm));
+        }
+        criteria.add(match);
+        return addSearchFilters(criteria, query).list();
+    }
+
+    @Override
+    protected String[] getSearchProperties(Criteria criteria) {
+        return new String[] {
+            getSearchProperty(criteria, DatasetEntity.PROPERTY_PHENOMENON, PHENOMENON_PATH_ALIAS),
+            getSearchProperty(criteria, DatasetEntity.PROPERTY_PROCEDURE, PROCEDURE_PATH_ALIAS),
+            getSearchProperty(criteria, DatasetEntity.PROPERTY_OFFERING, OFFERING_PATH_ALIAS),
+            getSearchProperty(criteria, DatasetEntity.PROPERTY_FEATURE, FEATURE_PATH_ALIAS)
+        };
+    }
 
+    /**
+     * @return the name property of the association, joined by an existing join of the criteria (e.g. the
+     *         procedure join excluding reference datasets) or a new left outer join
+     */
+    private static String getSearchProperty(Criteria criteria, String association, String alias) {
+        Iterator<Subcriteria> subcriteria = ((CriteriaImpl) criteria).iterateSubcriteria();
+        while (subcriteria.hasNext()) {
+            Subcriteria sc = subcriteria.next();
+            if (sc.getParent() == criteria && association.equals(sc.getPath()) && sc.getAlias() != null) {
+                return QueryUtils.createAssociation(sc.getAlias(), DescribableEntity.PROPERTY_NAME);
+            }
+        }
+        criteria.createAlias(association, alias, JoinType.LEFT_OUTER_JOIN);
+        return QueryUtils.createAssociation(alias, DescribableEntity.PROPERTY_NAME);
+    }
+
+    @Override
+    protected Criteria addSearchFilters(Criteria criteria, DbQuery query) {
         i18n(I18nOfferingEntity.class, criteria, query);
         i18n(I18nPhenomenonEntity.class, criteria, query);
         i18n(I18nProcedureEntity.class, criteria, query);
         i18n(I18nFeatureEntity.class, criteria, query);
-        return criteria.list();
+        return super.addSearchFilters(criteria, query);
     }
 
     @Override
@@ -29,6 +29,7 @@
 package org.n52.series.db.dao;
 
 import java.util.Date;
+import java.util.LinkedHashSet;
 import java.util.Set;
 
 import org.hibernate.Criteria;
@@ -37,6 +38,7 @@ import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.DetachedCriteria;
 import org.hibernate.criterion.Disjunction;
 import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Property;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.criterion.Subqueries;
@@ -57,6 +59,7 @@ import org.n52.io.request.Parameters;
 import org.n52.series.db.DataModelUtil;
 import org.n52.series.db.beans.DataEntity;
 import org.n52.series.db.beans.DatasetEntity;
+import org.n52.series.db.beans.FeatureEntity;
 import org.n52.series.db.beans.IdEntity;
 import org.n52.series.db.beans.OfferingEntity;
 import org.n52.series.db.beans.ProcedureEntity;
@@ -69,6 +72,11 @@ import org.slf4j.LoggerFactory;
 
 public class DbQuery {
 
+    /**
+     * Requests data as one series per result time, e.g. to compare the runs of a forecast.
+     */
+    public static final String GROUP_BY_RESULT_TIME = "groupByResultTime";
+
     private static final Logger LOGGER = LoggerFactory.getLogger(DbQuery.class);
 
     private static final String PROPERTY_ID = "id";
@@ -85,6 +93,12 @@ public class DbQuery {
 
     private boolean includeHierarchy = true;
 
+    private DatasetConstellationIndex datasetIndex;
+
+    private TranslationIndex translationIndex;
+
+    private HierarchyClosure hierarchyClosure;
+
     public DbQuery(IoParameters parameters) {
         if (parameters != null) {
             this.parameters = parameters;
@@ -97,8 +111,8 @@ public class DbQuery {
      * @return a new instance with spatial filters removed
      */
     public DbQuery removeSpatialFilter() {
-        return new DbQuery(parameters.removeAllOf(Parameters.BBOX)
-                                     .removeAllOf(Parameters.NEAR));
+        return withParameters(parameters.removeAllOf(Parameters.BBOX)
+                                         .removeAllOf(Parameters.NEAR));
     }
 
     /**
@@ -109,7 +123,7 @@ public class DbQuery {
      * @return a new instance with containing the new parameter values
      */
     public DbQuery replaceWith(String parameter, String... values) {
-        return new DbQuery(parameters.replaceWith(parameter, values));
+        return withParameters(parameters.replaceWith(parameter, values));
     }
 
     /**
@@ -126,7 +140,22 @@ public class DbQuery {
                 ioParameters = ioParameters.removeAllOf(parameterName);
             }
         }
-        return new DbQuery(ioParameters);
+        return withParameters(ioParameters);
+    }
+
+    /**
+     * Creates a new instance with the given parameters which shares the in-memory indexes of this instance.
+     *
+     * @param ioParameters
+     *        the parameters of the new instance
+     * @return a new instance with the given parameters
+     */
+    public DbQuery withParameters(IoParameters ioParameters) {
+        DbQuery query = new DbQuery(ioParameters);
+        query.setDatasetIndex(datasetIndex);
+        query.setTranslationIndex(translationIndex);
+        query.setHierarchyClosure(hierarchyClosure);
+        return query;
     }
 
     public String getDatabaseSridCode() {
@@ -137,6 +166,30 @@ public class DbQuery {
         this.databaseSridCode = databaseSridCode;
     }
 
+    public DatasetConstellationIndex getDatasetIndex() {
+        return datasetIndex;
+    }
+
+    public void setDatasetIndex(DatasetConstellationIndex datasetIndex) {
+        this.datasetIndex = datasetIndex;
+    }
+
+    public TranslationIndex getTranslationIndex() {
+        return translationIndex;
+    }
+
+    public void setTranslationIndex(TranslationIndex translationIndex) {
+        this.translationIndex = translationIndex;
+    }
+
+    public HierarchyClosure getHierarchyClosure() {
+        return hierarchyClosure;
+    }
+
+    public void setHierarchyClosure(HierarchyClosure hierarchyClosure) {
+        this.hierarchyClosure = hierarchyClosure;
+    }
+
     public String getHrefBase() {
         return parameters.getHrefBase();
     }
@@ -195,6 +248,10 @@ public class DbQuery {
         return parameters.getAsBoolean(Parameters.COMPLEX_PARENT, false);
     }
 
+    public boolean isGroupByResultTime() {
+        return parameters.getAsBoolean(GROUP_BY_RESULT_TIME, false);
+    }
+
     public Set<String> getValueTypes() {
         return parameters.getValueTypes();
     }
@@ -210,8 +267,49 @@ public class DbQuery {
 //                : ValueType.DEFAULT_VALUE_TYPE;
 //    }
 
+    /**
+     * @return {@code true} if the query does not restrict the set of datasets in any way
+     */
+    public boolean isUnfiltered() {
+        return !(hasValues(parameters.getCategories())
+                || hasValues(parameters.getProcedures())
+                || hasValues(parameters.getPhenomena())
+                || hasValues(parameters.getOfferings())
+                || hasValues(parameters.getPlatforms())
+                || hasValues(parameters.getFeatures())
+                || hasValues(parameters.getDatasets())
+                || hasValues(parameters.getSamplings())
+                || hasValues(parameters.getMeasuringPrograms())
+                || hasValues(parameters.getDatasetTypes())
+                || hasValues(parameters.getObservationTypes())
+                || hasValues(parameters.getValueTypes())
+                || parameters.containsParameter(Parameters.SERVICES)
+                || parameters.getSpatialFilter() != null
+                || parameters.getLastValueMatches() != null
+                || parameters.getODataFilter().isPresent()
+                || !parameters.getFilterResolver().shallIncludeAllDatasets());
+    }
+
     public boolean checkTranslationForLocale(Criteria criteria) {
-        return !criteria.add(Restrictions.like(PROPERTY_LOCALE, getCountryCode())).list().isEmpty();
+        return !criteria.add(Restrictions.like(PROPERTY_LOCALE, getCountryCode()))
+                        .setProjection(Projections.id())
+                        .setMaxResults(1)
+                        .list()
+                        .isEmpty();
+    }
+
+    /**
+     * @param clazz
+     *        the i18n entity type
+     * @param session
+     *        the session to check against if the translation index does not know the given type
+     * @return {@code true} if translations of the given type exist for the requested locale
+     */
+    public boolean checkTranslationForLocale(Class<?> clazz, Session session) {
+        if (translationIndex != null && translationIndex.isIndexed(clazz)) {
+            return translationIndex.hasTranslation(clazz, getCountryCode());
+        }
+        return checkTranslationForLocale(session.createCriteria(clazz));
     }
 
     public Criteria addLocaleTo(Criteria criteria, Class< ? > clazz) {
@@ -312,6 +410,11 @@ public class DbQuery {
             return criteria;
         }
 
+        if (!samplingSupported && !parameters.isMatchDomainIds() && addIndexedFilter(datasetName, criteria)) {
+            // resolved by the dataset index
+            return criteria;
+        }
+
         DetachedCriteria filter = DetachedCriteria.forClass(DatasetEntity.class);
 //        if (hasValues(platforms)) {
 //            features.addAll(getStationaryIds(platforms));
@@ -349,10 +452,26 @@ public class DbQuery {
         return criteria;
     }
 
+    private boolean addIndexedFilter(String datasetName, Criteria criteria) {
+        if (datasetIndex == null || !datasetIndex.isReady()) {
+            return false;
+        }
+        Set<Long> ids = datasetIndex.resolve(this, datasetName);
+        if (ids == null) {
+            return false;
+        }
+        String filterProperty = QueryUtils.createAssociation(datasetName, PROPERTY_ID);
+        criteria.add(ids.isEmpty()
+                ? Restrictions.sqlRestriction("1=0")
+                : Restrictions.in(filterProperty, ids));
+        return true;
+    }
+
     private void addProcedureRestriction(Set<String> procedures, DetachedCriteria filter, Session session) {
         if (isIncludeHierarchy() && DataModelUtil.isPropertyNameSupported(ProcedureEntity.PROPERTY_PARENTS,
                 ProcedureEntity.class, session)) {
-            addHierarchicalFilterRestriction(procedures, DatasetEntity.PROPERTY_PROCEDURE, filter, "proc_");
+            addHierarchicalFilterRestriction(procedures, DatasetEntity.PROPERTY_PROCEDURE, filter, "proc_",
+                    ProcedureEntity.class);
         } else {
             addFilterRestriction(procedures, DatasetEntity.PROPERTY_PROCEDURE, filter);
         }
@@ -361,7 +480,8 @@ public class DbQuery {
     private void addOfferingRestriction(Set<String> offerings, DetachedCriteria filter, Session session) {
         if (isIncludeHierarchy() && DataModelUtil.isPropertyNameSupported(OfferingEntity.PROPERTY_PARENTS,
                 OfferingEntity.class, session)) {
-            addHierarchicalFilterRestriction(offerings, DatasetEntity.PROPERTY_OFFERING, filter, "off_");
+            addHierarchicalFilterRestriction(offerings, DatasetEntity.PROPERTY_OFFERING, filter, "off_",
+                    OfferingEntity.class);
         } else {
             addFilterRestriction(offerings, DatasetEntity.PROPERTY_OFFERING, filter);
         }
@@ -369,7 +489,8 @@ public class DbQuery {
 
     private void addFeatureRestriction(Set<String> features, DetachedCriteria filter) {
         if (isIncludeHierarchy()) {
-            addHierarchicalFilterRestriction(features, DatasetEntity.PROPERTY_FEATURE, filter, "feat_");
+            addHierarchicalFilterRestriction(features, DatasetEntity.PROPERTY_FEATURE, filter, "feat_",
+                    FeatureEntity.class);
         } else {
             addFilterRestriction(features, DatasetEntity.PROPERTY_FEATURE, filter);
         }
@@ -378,8 +499,16 @@ public class DbQuery {
     private DetachedCriteria addHierarchicalFilterRestriction(Set<String> values,
                                                               String entity,
                                                               DetachedCriteria filter,
-                                                              String prefix) {
-        if (hasValues(values)) {
+                                                              String prefix,
+                                                              Class<?> entityType) {
+        if (hasValues(values) && !parameters.isMatchDomainIds()
+                && hierarchyClosure != null && hierarchyClosure.isReady(entityType)) {
+            // filtered entities and their direct children as flat id list
+            Set<Long> ids = new LinkedHashSet<>(QueryUtils.parseToIds(values));
+            ids.addAll(hierarchyClosure.getDescendants(entityType, ids, 1));
+            filter.createCriteria(entity, prefix + "e")
+                  .add(Restrictions.in(prefix + "e." + PROPERTY_ID, ids));
+        } else if (hasValues(values)) {
             filter.createCriteria(entity, prefix + "e")
                   // join the parents to enable filtering via parent ids
                   .createAlias(prefix + "e.parents", prefix + "p", JoinType.LEFT_OUTER_JOIN)
@@ -482,7 +611,7 @@ public class DbQuery {
     }
 
     public DbQuery withoutFieldsFilter() {
-        return new DbQuery(parameters.removeAllOf(Parameters.FILTER_FIELDS));
+        return withParameters(parameters.removeAllOf(Parameters.FILTER_FIELDS));
     }
 
     public boolean expandWithNextValuesBeyondInterval() {
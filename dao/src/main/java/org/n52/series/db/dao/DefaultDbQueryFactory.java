@@ -39,11 +39,17 @@ public class DefaultDbQueryFactory implements DbQueryFactory {
     private static final String EPSG_PREFIX = "EPSG:";
     private String databaseSrid = "EPSG:4326";
     private Integer epsgCode;
+    private DatasetConstellationIndex datasetIndex;
+    private TranslationIndex translationIndex;
+    private HierarchyClosure hierarchyClosure;
 
     @Override
     public DbQuery createFrom(IoParameters parameters) {
         DbQuery query = new DbQuery(parameters);
         query.setDatabaseSridCode(getDatabaseSrid());
+        query.setDatasetIndex(datasetIndex);
+        query.setTranslationIndex(translationIndex);
+        query.setHierarchyClosure(hierarchyClosure);
         return query;
     }
 
@@ -59,6 +65,18 @@ public class DefaultDbQueryFactory implements DbQueryFactory {
         }
     }
 
+    public void setDatasetIndex(DatasetConstellationIndex datasetIndex) {
+        this.datasetIndex = datasetIndex;
+    }
+
+    public void setTranslationIndex(TranslationIndex translationIndex) {
+        this.translationIndex = translationIndex;
+    }
+
+    public void setHierarchyClosure(HierarchyClosure hierarchyClosure) {
+        this.hierarchyClosure = hierarchyClosure;
+    }
+
     @Setting(STORAGE_EPSG_KEY)
     public void setStorageEpsg(int epsgCode) {
         this.epsgCode = epsgCode;
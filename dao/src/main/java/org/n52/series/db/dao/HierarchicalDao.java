@@ -29,12 +29,17 @@
 package org.n52.series.db.dao;
 
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.hibernate.Criteria;
@@ -44,9 +49,12 @@ import org.hibernate.criterion.Disjunction;
 import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.transform.RootEntityResultTransformer;
+import org.hibernate.type.LongType;
 import org.n52.io.request.IoParameters;
 import org.n52.io.request.Parameters;
 import org.n52.series.db.DataAccessException;
+import org.n52.series.db.DataModelUtil;
+import org.n52.series.db.SchemaCapabilities.CollectionTable;
 import org.n52.series.db.beans.DescribableEntity;
 import org.n52.series.db.beans.HierarchicalEntity;
 import org.n52.series.db.beans.IdEntity;
@@ -55,6 +63,11 @@ import org.n52.series.db.beans.i18n.I18nEntity;
 public abstract class HierarchicalDao<T extends HierarchicalEntity<T>, I extends I18nEntity<T>>
         extends ParameterDao<T, I> {
 
+    /**
+     * Guards the recursive query against cyclic hierarchies.
+     */
+    private static final int MAX_HIERARCHY_DEPTH = 1000;
+
     public HierarchicalDao(Session session) {
         super(session);
     }
@@ -72,7 +85,7 @@ public abstract class HierarchicalDao<T extends HierarchicalEntity<T>, I extends
                 } else {
                     children = super.getAllInstances(query);
                 }
-                return createReverse(children, entities);
+                return createReverse(children, entities, query);
             } else {
                 Criteria c = getCriteria(query);
                 if (entities == null || entities.isEmpty()) {
@@ -118,6 +131,14 @@ public abstract class HierarchicalDao<T extends HierarchicalEntity<T>, I extends
     }
 
     protected Set<Long> getChildrenIds(DbQuery query, Set<String> entities, int level) {
+        HierarchyClosure closure = query.getHierarchyClosure();
+        if (closure != null && closure.isReady(getEntityClass())) {
+            return closure.getDescendants(getEntityClass(), getParentIds(query, entities), level);
+        }
+        CollectionTable hierarchy = getHierarchyTable();
+        if (hierarchy != null) {
+            return queryDescendants(getParentIds(query, entities), level, hierarchy);
+        }
         Criteria c = getDefaultCriteria();
         c.add(query.getParameters().isMatchDomainIds() ? createDomainIdFilter(entities) : createIdFilter(entities));
         c.createCriteria(HierarchicalEntity.PROPERTY_CHILDREN, "c");
@@ -127,7 +148,64 @@ public abstract class HierarchicalDao<T extends HierarchicalEntity<T>, I extends
 
     protected DbQuery updateQuery(DbQuery query, Collection<String> entities) {
         IoParameters params =  replaceParameter(query, entities).removeAllOf(Parameters.MATCH_DOMAIN_IDS);
-        return new DbQuery(params);
+        return query.withParameters(params);
+    }
+
+    /**
+     * @return the hierarchy join table, if descendants can be resolved by a single recursive query
+     */
+    private CollectionTable getHierarchyTable() {
+        return DataModelUtil.isPostgreSQL(session)
+                ? DataModelUtil.getCollectionTable(getEntityClass(), HierarchicalEntity.PROPERTY_CHILDREN, session)
+                : null;
+    }
+
+    private Set<Long> getParentIds(DbQuery query, Set<String> entities) {
+        return query.getParameters().isMatchDomainIds()
+                ? getIdsOf(entities)
+                : new LinkedHashSet<>(QueryUtils.parseToIds(entities));
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<Long> getIdsOf(Set<String> domainIds) {
+        Criteria c = getDefaultCriteria();
+        c.add(createDomainIdFilter(domainIds));
+        c.setProjection(Projections.property(IdEntity.PROPERTY_ID));
+        return new LinkedHashSet<>(c.list());
+    }
+
+    /**
+     * Resolves all descendants of the given entities up to the given level with a single recursive query.
+     *
+     * @param parents
+     *        the ids of the entities to resolve the descendants of
+     * @param level
+     *        the number of levels to descend (at least one)
+     * @param hierarchy
+     *        the hierarchy join table
+     * @return the descendant ids
+     */
+    @SuppressWarnings("unchecked")
+    protected Set<Long> queryDescendants(Set<Long> parents, int level, CollectionTable hierarchy) {
+        if (parents.isEmpty()) {
+            return new LinkedHashSet<>();
+        }
+        String parent = "h." + hierarchy.getKeyColumn();
+        String child = "h." + hierarchy.getElementColumn();
+        String sql = "WITH RECURSIVE descendants(id, depth) AS ("
+                + " SELECT " + child + ", 1 FROM " + hierarchy.getTable() + " h"
+                + " WHERE " + parent + " IN (:parents)"
+                + " UNION"
+                + " SELECT " + child + ", d.depth + 1 FROM " + hierarchy.getTable() + " h"
+                + " JOIN descendants d ON " + parent + " = d.id"
+                + " WHERE d.depth < :level)"
+                + " SELECT DISTINCT id FROM descendants";
+        List<Long> descendants = session.createNativeQuery(sql)
+                .addScalar("id", LongType.INSTANCE)
+                .setParameterList("parents", parents)
+                .setParameter("level", Math.min(Math.max(level, 1), MAX_HIERARCHY_DEPTH))
+                .list();
+        return new LinkedHashSet<>(descendants);
     }
 
     protected Set<Long> queryRecursiv(Set<Long> entities, int level) {
@@ -180,18 +258,73 @@ public abstract class HierarchicalDao<T extends HierarchicalEntity<T>, I extends
         return new LinkedList<>(roots.values());
     }
 
+    /**
+     * Builds the trees of the given children. If the hierarchy closure is available, all ancestors are loaded
+     * with a single query instead of lazily loading the parents of each node. The (lazy) children of the
+     * ancestors are not loaded either but replaced by the children of the tree.
+     *
+     * @param children
+     *        the children to build the trees for
+     * @param filtered
+     *        the filtered entities which become roots
+     * @param query
+     *        the query
+     * @return the roots of the trees
+     */
+    protected List<T> createReverse(Collection<T> children, Set<String> filtered, DbQuery query) {
+        HierarchyClosure closure = query.getHierarchyClosure();
+        if (closure == null || !closure.isReady(getEntityClass())) {
+            return createReverse(children, filtered);
+        }
+        Set<Long> childIds = children.stream().map(T::getId).collect(Collectors.toSet());
+        Map<Long, T> ancestors = getInstancesById(closure.getAncestors(getEntityClass(), childIds));
+        Map<Long, T> roots = new LinkedHashMap<>();
+        processReverse(null, children, roots, new LinkedHashMap<>(), filtered,
+            entity -> closure.getParents(getEntityClass(), entity.getId()).stream()
+                             .map(ancestors::get)
+                             .filter(Objects::nonNull)
+                             .collect(Collectors.toList()),
+            entity -> entity.setChildren(new LinkedHashSet<>()));
+        return new LinkedList<>(roots.values());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<Long, T> getInstancesById(Set<Long> ids) {
+        Map<Long, T> instances = new HashMap<>();
+        if (!ids.isEmpty()) {
+            Criteria c = getDefaultCriteria();
+            c.add(createLongIdFilter(ids));
+            for (T instance : (List<T>) c.list()) {
+                instances.put(instance.getId(), instance);
+            }
+        }
+        return instances;
+    }
+
     protected void processReverse(Long childId, Collection<T> entities, Map<Long, T> roots, Map<Long, T> leafs,
             Set<String> filtered) {
+        processReverse(childId, entities, roots, leafs, filtered,
+            entity -> entity.hasParents() ? entity.getParents() : Collections.emptySet(),
+            entity -> {
+                if (entity.hasChildren()) {
+                    entity.getChildren().clear();
+                }
+            });
+    }
+
+    private void processReverse(Long childId, Collection<T> entities, Map<Long, T> roots, Map<Long, T> leafs,
+            Set<String> filtered, Function<T, Collection<T>> parentsOf, Consumer<T> resetChildren) {
         for (T entity : entities) {
             if (childId != null) {
-                if (!leafs.containsKey(entity.getId()) && entity.hasChildren()) {
-                    entity.getChildren().clear();
+                if (!leafs.containsKey(entity.getId())) {
+                    resetChildren.accept(entity);
                 }
                 entity.addChild(leafs.get(childId));
             }
-            if (entity.hasParents() && notQueried(entity, filtered)) {
+            Collection<T> parents = parentsOf.apply(entity);
+            if (!parents.isEmpty() && notQueried(entity, filtered)) {
                 leafs.put(entity.getId(), entity);
-                processReverse(entity.getId(), entity.getParents(), roots, leafs, filtered);
+                processReverse(entity.getId(), parents, roots, leafs, filtered, parentsOf, resetChildren);
             } else {
                 roots.put(entity.getId(), entity);
             }
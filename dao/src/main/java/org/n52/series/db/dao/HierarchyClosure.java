@@ -0,0 +1,316 @@
+/*
+ * Copyright (C) 2015-2021 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.dao;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.Criteria;
+import org.hibernate.Session;
+import org.hibernate.criterion.Projections;
+import org.n52.series.db.DataModelUtil;
+import org.n52.series.db.HibernateSessionStore;
+import org.n52.series.db.beans.DescribableEntity;
+import org.n52.series.db.beans.FeatureEntity;
+import org.n52.series.db.beans.HierarchicalEntity;
+import org.n52.series.db.beans.OfferingEntity;
+import org.n52.series.db.beans.ProcedureEntity;
+import org.n52.series.db.da.MetadataCatalog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * In-memory ancestor/descendant closure of the feature, procedure and offering hierarchies. Hierarchy
+ * lookups (children of a filter, parents of a tree node) are answered from memory instead of per-level
+ * queries or lazily loaded associations.
+ *
+ * The closure is rebuilt in the background and each time the {@link MetadataCatalog} gets refreshed or
+ * invalidated, e.g. because its change detection noticed new features, procedures or offerings. Until the
+ * first build has completed, lookups are left to the database.
+ */
+public class HierarchyClosure {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(HierarchyClosure.class);
+
+    private static final long DEFAULT_REFRESH_INTERVAL = 600;
+
+    private static final Class<?>[] HIERARCHICAL_TYPES = {
+        FeatureEntity.class,
+        ProcedureEntity.class,
+        OfferingEntity.class
+    };
+
+    @Autowired
+    private HibernateSessionStore sessionStore;
+
+    @Autowired(required = false)
+    private MetadataCatalog metadataCatalog;
+
+    private volatile Map<Class<?>, Hierarchy> hierarchies;
+
+    private ScheduledExecutorService scheduler;
+
+    private boolean enabled;
+
+    private long refreshInterval = DEFAULT_REFRESH_INTERVAL;
+
+    public void init() {
+        if (enabled) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "hierarchy-closure");
+                thread.setDaemon(true);
+                return thread;
+            });
+            if (refreshInterval > 0) {
+                scheduler.scheduleWithFixedDelay(this::rebuild, 0, refreshInterval, TimeUnit.SECONDS);
+            } else {
+                scheduler.execute(this::rebuild);
+            }
+            if (metadataCatalog != null) {
+                metadataCatalog.addRefreshListener(() -> scheduler.execute(this::rebuild));
+            }
+        }
+    }
+
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param refreshInterval
+     *        the interval (in seconds) to rebuild the closure, values &lt;= 0 build it once at startup only
+     */
+    public void setRefreshInterval(long refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+
+    /**
+     * @param clazz
+     *        the hierarchical entity type
+     * @return {@code true} if the hierarchy of the given type has been loaded
+     */
+    public boolean isReady(Class<?> clazz) {
+        Map<Class<?>, Hierarchy> current = hierarchies;
+        return enabled && current != null && current.containsKey(clazz);
+    }
+
+    /**
+     * Rebuilds the closure from the database. A failing build keeps the previous closure.
+     */
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        Session session = sessionStore.getSession();
+        try {
+            Map<Class<?>, Hierarchy> loaded = new HashMap<>();
+            for (Class<?> clazz : HIERARCHICAL_TYPES) {
+                if (DataModelUtil.isEntitySupported(clazz, session)
+                        && DataModelUtil.isPropertyNameSupported(HierarchicalEntity.PROPERTY_PARENTS, clazz,
+                                session)) {
+                    loaded.put(clazz, Hierarchy.of(loadParents(clazz, session)));
+                }
+            }
+            hierarchies = Collections.unmodifiableMap(loaded);
+            LOGGER.debug("Building hierarchy closure took {} ms", System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not build hierarchy closure.", e);
+        } finally {
+            sessionStore.returnSession(session);
+        }
+    }
+
+    void setHierarchy(Class<?> clazz, Map<Long, Set<Long>> parents) {
+        Map<Class<?>, Hierarchy> current = hierarchies;
+        Map<Class<?>, Hierarchy> updated = current != null ? new HashMap<>(current) : new HashMap<>();
+        updated.put(clazz, Hierarchy.of(parents));
+        hierarchies = Collections.unmodifiableMap(updated);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Long, Set<Long>> loadParents(Class<?> clazz, Session session) {
+        Criteria criteria = session.createCriteria(clazz, "e")
+                .createAlias("e." + HierarchicalEntity.PROPERTY_PARENTS, "p")
+                .setProjection(Projections.projectionList()
+                        .add(Projections.property("e." + DescribableEntity.PROPERTY_ID))
+                        .add(Projections.property("p." + DescribableEntity.PROPERTY_ID)));
+        Map<Long, Set<Long>> parents = new HashMap<>();
+        for (Object[] row : (List<Object[]>) criteria.list()) {
+            parents.computeIfAbsent((Long) row[0], id -> new LinkedHashSet<>()).add((Long) row[1]);
+        }
+        return parents;
+    }
+
+    /**
+     * @param clazz
+     *        the hierarchical entity type
+     * @param ids
+     *        the ids to resolve the descendants of
+     * @param levels
+     *        the number of levels to descend (at least one)
+     * @return the ids of all descendants up to the given level, excluding the given ids unless they are
+     *         descendants of each other
+     */
+    public Set<Long> getDescendants(Class<?> clazz, Collection<Long> ids, int levels) {
+        Hierarchy hierarchy = getHierarchy(clazz);
+        return hierarchy.collect(ids, Math.max(levels, 1), hierarchy.children, hierarchy.descendants);
+    }
+
+    /**
+     * @param clazz
+     *        the hierarchical entity type
+     * @param ids
+     *        the ids to resolve the ancestors of
+     * @return the ids of all ancestors
+     */
+    public Set<Long> getAncestors(Class<?> clazz, Collection<Long> ids) {
+        Hierarchy hierarchy = getHierarchy(clazz);
+        return hierarchy.collect(ids, Integer.MAX_VALUE, hierarchy.parents, hierarchy.ancestors);
+    }
+
+    /**
+     * @param clazz
+     *        the hierarchical entity type
+     * @param id
+     *        the entity id
+     * @return the ids of the direct parents
+     */
+    public Set<Long> getParents(Class<?> clazz, Long id) {
+        return toSet(getHierarchy(clazz).parents.get(id));
+    }
+
+    private Hierarchy getHierarchy(Class<?> clazz) {
+        Map<Class<?>, Hierarchy> current = hierarchies;
+        Hierarchy hierarchy = current != null ? current.get(clazz) : null;
+        if (hierarchy == null) {
+            throw new IllegalStateException("Hierarchy of " + clazz.getSimpleName() + " is not available.");
+        }
+        return hierarchy;
+    }
+
+    private static Set<Long> toSet(long[] ids) {
+        Set<Long> result = new LinkedHashSet<>();
+        if (ids != null) {
+            for (long id : ids) {
+                result.add(id);
+            }
+        }
+        return result;
+    }
+
+    private static final class Hierarchy {
+
+        private final Map<Long, long[]> parents;
+
+        private final Map<Long, long[]> children;
+
+        private final Map<Long, long[]> ancestors;
+
+        private final Map<Long, long[]> descendants;
+
+        private Hierarchy(Map<Long, long[]> parents, Map<Long, long[]> children) {
+            this.parents = parents;
+            this.children = children;
+            this.ancestors = close(parents);
+            this.descendants = close(children);
+        }
+
+        static Hierarchy of(Map<Long, Set<Long>> parents) {
+            Map<Long, Set<Long>> children = new HashMap<>();
+            parents.forEach((child, ofChild) -> ofChild.forEach(
+                parent -> children.computeIfAbsent(parent, id -> new LinkedHashSet<>()).add(child)));
+            return new Hierarchy(toArrays(parents), toArrays(children));
+        }
+
+        /**
+         * Computes the transitive closure (in breadth first order) of each node of the given relation.
+         */
+        private static Map<Long, long[]> close(Map<Long, long[]> relation) {
+            Map<Long, long[]> closure = new HashMap<>(relation.size());
+            for (Long node : relation.keySet()) {
+                Set<Long> reachable = new LinkedHashSet<>();
+                Deque<Long> queue = new ArrayDeque<>();
+                queue.add(node);
+                while (!queue.isEmpty()) {
+                    for (long next : relation.getOrDefault(queue.poll(), new long[0])) {
+                        // the visited check guards against cyclic data
+                        if (reachable.add(next)) {
+                            queue.add(next);
+                        }
+                    }
+                }
+                closure.put(node, reachable.stream().mapToLong(Long::longValue).toArray());
+            }
+            return closure;
+        }
+
+        private static Map<Long, long[]> toArrays(Map<Long, Set<Long>> relation) {
+            Map<Long, long[]> arrays = new HashMap<>(relation.size());
+            relation.forEach((id, related) -> arrays.put(id, related.stream().mapToLong(Long::longValue).toArray()));
+            return arrays;
+        }
+
+        Set<Long> collect(Collection<Long> ids, int levels, Map<Long, long[]> relation, Map<Long, long[]> closure) {
+            Set<Long> result = new LinkedHashSet<>();
+            if (levels == Integer.MAX_VALUE) {
+                ids.forEach(id -> result.addAll(toSet(closure.get(id))));
+                return result;
+            }
+            Set<Long> level = new LinkedHashSet<>(ids);
+            for (int i = 0; i < levels && !level.isEmpty(); i++) {
+                Set<Long> next = new LinkedHashSet<>();
+                for (Long id : level) {
+                    for (long related : relation.getOrDefault(id, new long[0])) {
+                        if (result.add(related)) {
+                            next.add(related);
+                        }
+                    }
+                }
+                level = next;
+            }
+            return result;
+        }
+    }
+
+}
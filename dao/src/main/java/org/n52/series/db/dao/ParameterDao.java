@@ -58,9 +58,8 @@ public abstract class ParameterDao<T extends DescribableEntity, I extends I18nEn
         LOGGER.debug("find instance: {}", query);
         Criteria criteria = getDefaultCriteria(query);
         addFetchModes(criteria, query);
-        criteria = i18n(getI18NEntityClass(), criteria, query);
         criteria.add(Restrictions.ilike(DescribableEntity.PROPERTY_NAME, "%" + query.getSearchTerm() + "%"));
-        criteria = query.addFilters(criteria, getDatasetProperty(), session);
+        criteria = addSearchFilters(criteria, query);
         long start = System.currentTimeMillis();
         try {
             return criteria.list();
@@ -69,6 +68,11 @@ public abstract class ParameterDao<T extends DescribableEntity, I extends I18nEn
         }
     }
 
+    @Override
+    protected Criteria addSearchFilters(Criteria criteria, DbQuery query) {
+        return super.addSearchFilters(i18n(getI18NEntityClass(), criteria, query), query);
+    }
+
     private void logProcessingTime(long start) {
         LOGGER.debug("Querying all instances takes {} ms", System.currentTimeMillis() - start);
     }
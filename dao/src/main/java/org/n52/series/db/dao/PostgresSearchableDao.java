@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2015-2021 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.dao;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.Criteria;
+import org.hibernate.HibernateException;
+import org.hibernate.criterion.CriteriaQuery;
+import org.hibernate.criterion.Criterion;
+import org.hibernate.criterion.Disjunction;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
+import org.hibernate.criterion.Restrictions;
+import org.hibernate.criterion.SimpleProjection;
+import org.hibernate.engine.spi.TypedValue;
+import org.hibernate.type.StandardBasicTypes;
+import org.hibernate.type.Type;
+import org.n52.io.request.Parameters;
+import org.n52.series.db.beans.DescribableEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link SearchableDao} for PostgreSQL databases with the {@code pg_trgm} extension installed. The search
+ * properties of the dao are matched like the {@code find} query of the dao does ({@code ilike '%term%'}) or
+ * by trigram similarity, which both can be answered by a GIN trigram index (see
+ * {@code src/extension/search/create_trigram_indexes.sql}). Results are ranked by their similarity to the
+ * search term and limited to the configured number of results unless the request contains an explicit limit.
+ * <p>
+ * Ranking takes two queries: the first one selects the ids of the matching entities ordered by a similarity
+ * projection (referenced by its alias), the second one loads the entities of these ids.
+ *
+ * @param <T>
+ *        the entity type
+ */
+public class PostgresSearchableDao<T> implements SearchableDao<T> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PostgresSearchableDao.class);
+
+    private static final String RANK_ALIAS = "rank";
+
+    private final AbstractDao<T> dao;
+
+    private final int limit;
+
+    public PostgresSearchableDao(AbstractDao<T> dao, int limit) {
+        this.dao = dao;
+        this.limit = limit;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<T> find(DbQuery q) {
+        DbQuery query = dao.checkLevelParameterForHierarchyQuery(q);
+        LOGGER.debug("find ranked instances: {}", query);
+        long start = System.currentTimeMillis();
+        try {
+            List<Serializable> ids = findRankedIds(query);
+            if (ids.isEmpty()) {
+                return Collections.emptyList();
+            }
+            Criteria criteria = dao.getDefaultCriteria(query);
+            dao.addFetchModes(criteria, query);
+            List<T> entities = criteria.add(Restrictions.in(DescribableEntity.PROPERTY_ID, ids)).list();
+            Map<Serializable, Integer> ranks = new HashMap<>();
+            for (int i = 0; i < ids.size(); i++) {
+                ranks.put(ids.get(i), i);
+            }
+            List<T> ranked = new ArrayList<>(entities);
+            ranked.sort(Comparator.comparing(entity -> ranks.get(dao.session.getIdentifier(entity))));
+            return ranked;
+        } finally {
+            LOGGER.debug("Ranked search takes {} ms", System.currentTimeMillis() - start);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Serializable> findRankedIds(DbQuery query) {
+        String searchTerm = query.getSearchTerm();
+        Criteria criteria = dao.getDefaultCriteria(query);
+        String[] properties = dao.getSearchProperties(criteria);
+        Disjunction match = Restrictions.disjunction();
+        for (String property : properties) {
+            match.add(new TrigramMatch(property, searchTerm));
+        }
+        criteria.add(match);
+        criteria.setProjection(Projections.projectionList()
+                .add(Projections.id())
+                .add(new Similarity(properties, searchTerm), RANK_ALIAS));
+        // rank before the (id) order the search filters add for paging
+        criteria.addOrder(Order.desc(RANK_ALIAS));
+        criteria = dao.addSearchFilters(criteria, query);
+        if (limit > 0 && !query.getParameters().containsParameter(Parameters.LIMIT)) {
+            criteria.setMaxResults(limit);
+        }
+        List<Serializable> ids = new ArrayList<>();
+        for (Object[] row : (List<Object[]>) criteria.list()) {
+            ids.add((Serializable) row[0]);
+        }
+        return ids;
+    }
+
+    private static String getColumn(Criteria criteria, CriteriaQuery criteriaQuery, String property) {
+        return criteriaQuery.getColumnsUsingProjection(criteria, property)[0];
+    }
+
+    /**
+     * Renders the search term as PostgreSQL escape string constant. Projections can not contribute query
+     * parameters, so the term has to be part of the SQL.
+     */
+    static String toLiteral(String term) {
+        return "E'" + term.replace("\\", "\\\\").replace("'", "''") + "'";
+    }
+    /**
+     * Matches if the property contains the term (case insensitive) or is similar to it.
+     */
+    private static final class TrigramMatch implements Criterion {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String property;
+
+        private final String term;
+
+        TrigramMatch(String property, String term) {
+            this.property = property;
+            this.term = term;
+        }
+
+        @Override
+        public String toSqlString(Criteria criteria, CriteriaQuery criteriaQuery) throws HibernateException {
+            String column = getColumn(criteria, criteriaQuery, property);
+            return "(" + column + " ilike ? or " + column + " % ?)";
+        }
+
+        @Override
+        public TypedValue[] getTypedValues(Criteria criteria, CriteriaQuery criteriaQuery)
+                throws HibernateException {
+            return new TypedValue[] {
+                criteriaQuery.getTypedValue(criteria, property, "%" + term + "%"),
+                criteriaQuery.getTypedValue(criteria, property, term)
+            };
+        }
+
+        @Override
+        public String toString() {
+            return property + " ~ " + term;
+        }
+    }
+
+    /**
+     * Selects the best trigram similarity of the properties to the search term.
+     */
+    private static final class Similarity extends SimpleProjection {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String[] properties;
+
+        private final String term;
+
+        Similarity(String[] properties, String term) {
+            this.properties = properties;
+            this.term = term;
+        }
+
+        @Override
+        public String toSqlString(Criteria criteria, int position, CriteriaQuery criteriaQuery)
+                throws HibernateException {
+            String literal = toLiteral(term);
+            StringBuilder sql = new StringBuilder("greatest(");
+            for (int i = 0; i < properties.length; i++) {
+                sql.append(i > 0 ? ", " : "")
+                   .append("similarity(")
+                   .append(getColumn(criteria, criteriaQuery, properties[i]))
+                   .append(", ")
+                   .append(literal)
+                   .append(")");
+            }
+            return sql.append(") as ")
+                      .append(getColumnAliases(position, criteria, criteriaQuery)[0])
+                      .toString();
+        }
+
+        @Override
+        public Type[] getTypes(Criteria criteria, CriteriaQuery criteriaQuery) throws HibernateException {
+            return new Type[] {
+                StandardBasicTypes.DOUBLE
+            };
+        }
+
+        @Override
+        public String toString() {
+            return "similarity(" + String.join(", ", properties) + ", " + term + ")";
+        }
+    }
+
+}
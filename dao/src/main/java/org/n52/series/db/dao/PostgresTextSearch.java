@@ -0,0 +1,81 @@
+/*
+ * Copyright (C) 2015-2021 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.dao;
+
+import org.hibernate.Session;
+import org.n52.series.db.DataModelUtil;
+
+/**
+ * Decides whether search requests are answered by a ranked {@link PostgresSearchableDao}. Requires the
+ * {@code pg_trgm} extension and should be backed by the GIN indexes of
+ * {@code src/extension/search/create_trigram_indexes.sql}.
+ */
+public class PostgresTextSearch {
+
+    private static final int DEFAULT_LIMIT = 100;
+
+    private boolean enabled;
+
+    private int limit = DEFAULT_LIMIT;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param limit
+     *        the maximum number of ranked results per resource type, values &lt;= 0 do not limit the results
+     */
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * @param <T>
+     *        the entity type
+     * @param dao
+     *        the dao of the searched entity
+     * @param fallback
+     *        the dao to use if ranked search is disabled or not supported by the database
+     * @param session
+     *        the current session
+     * @return the dao to search with
+     */
+    public <T> SearchableDao<T> createSearchableDao(AbstractDao<T> dao, SearchableDao<T> fallback,
+            Session session) {
+        return enabled && DataModelUtil.isPostgreSQL(session)
+                ? new PostgresSearchableDao<>(dao, limit)
+                : fallback;
+    }
+
+}
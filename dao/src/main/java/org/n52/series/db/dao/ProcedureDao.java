@@ -31,15 +31,21 @@ package org.n52.series.db.dao;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 
 import org.hibernate.Criteria;
+import org.hibernate.FetchMode;
 import org.hibernate.Session;
+import org.hibernate.criterion.DetachedCriteria;
+import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.criterion.Subqueries;
 import org.n52.io.request.IoParameters;
 import org.n52.io.request.Parameters;
 import org.n52.series.db.beans.DatasetEntity;
 import org.n52.series.db.beans.DescribableEntity;
+import org.n52.series.db.beans.HierarchicalEntity;
 import org.n52.series.db.beans.ProcedureEntity;
 import org.n52.series.db.beans.i18n.I18nProcedureEntity;
 import org.slf4j.Logger;
@@ -65,6 +71,30 @@ public class ProcedureDao extends HierarchicalDao<ProcedureEntity, I18nProcedure
                                              .uniqueResult());
     }
 
+    /**
+     * Loads the distinct procedures of all published datasets of a platform together with their parents in a
+     * single query.
+     *
+     * @param platformId
+     *        the platform id
+     * @return the procedures with initialized parents
+     */
+    @SuppressWarnings("unchecked")
+    public List<ProcedureEntity> getInstancesOfPlatform(Long platformId) {
+        String platform = QueryUtils.createAssociation(DatasetEntity.PROPERTY_PLATFORM, DescribableEntity.PROPERTY_ID);
+        String procedure = QueryUtils.createAssociation(DatasetEntity.PROPERTY_PROCEDURE,
+                                                        DescribableEntity.PROPERTY_ID);
+        DetachedCriteria procedures = DetachedCriteria.forClass(DatasetEntity.class)
+                                                      .add(createPublishedDatasetFilter())
+                                                      .add(Restrictions.eq(platform, platformId))
+                                                      .setProjection(Projections.property(procedure));
+        return session.createCriteria(getEntityClass())
+                      .add(Subqueries.propertyIn(DescribableEntity.PROPERTY_ID, procedures))
+                      .setFetchMode(HierarchicalEntity.PROPERTY_PARENTS, FetchMode.JOIN)
+                      .setResultTransformer(Criteria.DISTINCT_ROOT_ENTITY)
+                      .list();
+    }
+
     @Override
     public Set<Long> getChildrenIds(DbQuery query) {
         Set<String> procedures = query.getParameters().getFeatures();
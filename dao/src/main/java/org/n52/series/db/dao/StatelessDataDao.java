@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2015-2021 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.dao;
+
+import java.util.List;
+
+import org.hibernate.Criteria;
+import org.hibernate.Session;
+import org.hibernate.StatelessSession;
+import org.n52.series.db.beans.DataEntity;
+import org.n52.series.db.beans.DatasetEntity;
+
+/**
+ * A {@link DataDao} running its queries on a {@link StatelessSession}. Loaded observations are not attached to a
+ * persistence context: no snapshots are kept and associations are not loaded lazily. The dataset is set on
+ * each observation as a reference of the regular session, so callers can use it as with observations loaded by
+ * {@link DataDao}.
+ *
+ * @param <T>
+ *        the data entity type
+ */
+@SuppressWarnings("rawtypes")
+public class StatelessDataDao<T extends DataEntity> extends DataDao<T> {
+
+    private final StatelessSession reader;
+
+    public StatelessDataDao(Session session, StatelessSession reader, Class<T> clazz) {
+        super(session, clazz);
+        this.reader = reader;
+    }
+
+    @Override
+    protected Criteria createCriteria() {
+        return reader.createCriteria(getEntityClass());
+    }
+
+    @Override
+    public List<T> getAllInstancesFor(Long dataset, DbQuery query) {
+        List<T> observations = super.getAllInstancesFor(dataset, query);
+        DatasetEntity reference = session.load(DatasetEntity.class, dataset);
+        for (T observation : observations) {
+            observation.setDataset(reference);
+        }
+        return observations;
+    }
+
+}
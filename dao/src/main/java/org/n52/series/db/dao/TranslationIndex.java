@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2015-2021 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.dao;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import javax.persistence.metamodel.EntityType;
+
+import org.hibernate.Session;
+import org.hibernate.criterion.Projections;
+import org.n52.series.db.HibernateSessionStore;
+import org.n52.series.db.beans.i18n.I18nEntity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+
+/**
+ * Knows for which locales translations exist per i18n entity type. The locales are collected once at startup
+ * and refreshed in the background, so checking whether a translation join is needed does not hit the
+ * database on the request path. Types which are not indexed (yet) are checked against the database.
+ * <p>
+ * Locales are matched like the database check does ({@code locale like ?}). Translations of a locale which
+ * is new to a type are not known before the next rebuild, so the index is disabled by default.
+ */
+public class TranslationIndex {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TranslationIndex.class);
+
+    private static final long DEFAULT_REFRESH_INTERVAL = 600;
+
+    private static final String PROPERTY_LOCALE = "locale";
+
+    @Autowired
+    private HibernateSessionStore sessionStore;
+
+    private volatile Map<Class<?>, Set<String>> locales;
+
+    private ScheduledExecutorService scheduler;
+
+    private boolean enabled;
+
+    private long refreshInterval = DEFAULT_REFRESH_INTERVAL;
+
+    public void init() {
+        if (enabled) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "translation-index");
+                thread.setDaemon(true);
+                return thread;
+            });
+            if (refreshInterval > 0) {
+                scheduler.scheduleWithFixedDelay(this::rebuild, 0, refreshInterval, TimeUnit.SECONDS);
+            } else {
+                scheduler.execute(this::rebuild);
+            }
+        }
+    }
+
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param refreshInterval
+     *        the interval (in seconds) to rebuild the index, values &lt;= 0 build it once at startup only
+     */
+    public void setRefreshInterval(long refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+
+    /**
+     * @param clazz
+     *        the i18n entity type
+     * @return {@code true} if the translated locales of the given type are known
+     */
+    public boolean isIndexed(Class<?> clazz) {
+        Map<Class<?>, Set<String>> current = locales;
+        return enabled && current != null && current.containsKey(clazz);
+    }
+
+    /**
+     * @param clazz
+     *        the i18n entity type
+     * @param locale
+     *        the locale (pattern) to check, matched like {@code locale like ?} would match it
+     * @return {@code true} if at least one translation of the given type exists for the locale
+     */
+    public boolean hasTranslation(Class<?> clazz, String locale) {
+        Map<Class<?>, Set<String>> current = locales;
+        Set<String> translated = current != null
+                ? current.getOrDefault(clazz, Collections.emptySet())
+                : Collections.<String> emptySet();
+        if (locale == null || translated.isEmpty()) {
+            return false;
+        }
+        if (locale.indexOf('\\') < 0 && translated.contains(locale)) {
+            return true;
+        }
+        Pattern pattern = toPattern(locale);
+        return translated.stream().anyMatch(candidate -> pattern.matcher(candidate).matches());
+    }
+
+    /**
+     * Collects the locales of all mapped i18n entity types. A failing build keeps the previous index.
+     */
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        Session session = sessionStore.getSession();
+        try {
+            Map<Class<?>, Set<String>> collected = new HashMap<>();
+            for (EntityType<?> entity : session.getSessionFactory().getMetamodel().getEntities()) {
+                Class<?> clazz = entity.getJavaType();
+                if (clazz != null && I18nEntity.class.isAssignableFrom(clazz)) {
+                    collected.put(clazz, collectLocales(clazz, session));
+                }
+            }
+            setLocales(collected);
+            LOGGER.debug("Building translation index took {} ms", System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Could not build translation index.", e);
+        } finally {
+            sessionStore.returnSession(session);
+        }
+    }
+
+    void setLocales(Map<Class<?>, Set<String>> collected) {
+        locales = Collections.unmodifiableMap(new HashMap<>(collected));
+    }
+
+    /**
+     * @param like
+     *        the pattern of a {@code like} restriction, using the default escape character (backslash)
+     * @return the equivalent regular expression
+     */
+    private static Pattern toPattern(String like) {
+        StringBuilder regex = new StringBuilder();
+        StringBuilder literal = new StringBuilder();
+        boolean escaped = false;
+        for (char c : like.toCharArray()) {
+            if (escaped) {
+                literal.append(c);
+                escaped = false;
+            } else if (c == '\\') {
+                escaped = true;
+            } else if (c == '%' || c == '_') {
+                regex.append(Pattern.quote(literal.toString())).append(c == '%' ? ".*" : ".");
+                literal.setLength(0);
+            } else {
+                literal.append(c);
+            }
+        }
+        return Pattern.compile(regex.append(Pattern.quote(literal.toString())).toString(), Pattern.DOTALL);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<String> collectLocales(Class<?> clazz, Session session) {
+        List<Object> values = session.createCriteria(clazz)
+                                     .setProjection(Projections.distinct(Projections.property(PROPERTY_LOCALE)))
+                                     .list();
+        Set<String> collected = new HashSet<>();
+        values.stream().filter(Objects::nonNull).map(Object::toString).forEach(collected::add);
+        return Collections.unmodifiableSet(collected);
+    }
+
+}
@@ -29,6 +29,7 @@
 package org.n52.series.srv;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import org.n52.io.request.IoParameters;
@@ -49,6 +50,9 @@ public class AccessService<T extends ParameterOutput> extends ParameterService<T
     @Autowired
     protected DbQueryFactory dbQueryFactory;
 
+    @Autowired(required = false)
+    private List<ListingListener> listingListeners = Collections.emptyList();
+
     public AccessService(OutputAssembler<T> repository) {
         this.repository = repository;
     }
@@ -58,6 +62,7 @@ public class AccessService<T extends ParameterOutput> extends ParameterService<T
         try {
             DbQuery dbQuery = dbQueryFactory.createFrom(query);
             List<T> results = repository.getAllExpanded(dbQuery);
+            notifyListing(results, query);
             return new OutputCollection<T>(results);
         } catch (DataAccessException e) {
             throw new InternalServerException("Could not get expanded data.", e);
@@ -69,6 +74,7 @@ public class AccessService<T extends ParameterOutput> extends ParameterService<T
         try {
             DbQuery dbQuery = dbQueryFactory.createFrom(query);
             List<T> results = repository.getAllCondensed(dbQuery);
+            notifyListing(results, query);
             return new OutputCollection<T>(results);
         } catch (DataAccessException e) {
             throw new InternalServerException("Could not get condensed data.", e);
@@ -83,6 +89,7 @@ public class AccessService<T extends ParameterOutput> extends ParameterService<T
             for (String id : ids) {
                 results.add(repository.getInstance(id, dbQuery));
             }
+            notifyListing(results, query);
             return new OutputCollection<>(results);
         } catch (DataAccessException e) {
             throw new InternalServerException("Could not get multiple instance data.", e);
@@ -99,6 +106,12 @@ public class AccessService<T extends ParameterOutput> extends ParameterService<T
         }
     }
 
+    private void notifyListing(List<T> results, IoParameters query) {
+        for (ListingListener listener : listingListeners) {
+            listener.onListing(results, query);
+        }
+    }
+
     @Override
     public boolean exists(String id, IoParameters parameters) {
         try {
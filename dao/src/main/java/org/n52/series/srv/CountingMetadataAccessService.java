@@ -43,12 +43,22 @@ public class CountingMetadataAccessService implements CountingMetadataService {
 
     private final DbQueryFactory dbQueryFactory;
 
+    private boolean approximateCounts;
+
     @Autowired
     public CountingMetadataAccessService(EntityCounter counter, DbQueryFactory dbQueryFactory) {
         this.counter = counter;
         this.dbQueryFactory = dbQueryFactory;
     }
 
+    /**
+     * @param approximateCounts
+     *        if unfiltered counts shall be estimated from the query plan instead of being counted exactly
+     */
+    public void setApproximateCounts(boolean approximateCounts) {
+        this.approximateCounts = approximateCounts;
+    }
+
     @Override
     public Long getServiceCount(IoParameters parameters) {
         // Spring configuration has only 1 service
@@ -57,101 +67,47 @@ public class CountingMetadataAccessService implements CountingMetadataService {
 
     @Override
     public Long getOfferingCount(IoParameters parameters) {
-        try {
-            DbQuery query = dbQueryFactory.createFrom(parameters);
-            return counter.countOfferings(query);
-        } catch (DataAccessException e) {
-            throwCouldNotCountEntityException("offering", e);
-            return -1L;
-        }
+        return count(EntityCounter.OFFERINGS, "offering", parameters);
     }
 
     @Override
     public Long getCategoryCount(IoParameters parameters) {
-        try {
-            DbQuery query = dbQueryFactory.createFrom(parameters);
-            return counter.countCategories(query);
-        } catch (DataAccessException e) {
-            throwCouldNotCountEntityException("category", e);
-            return -1L;
-        }
+        return count(EntityCounter.CATEGORIES, "category", parameters);
     }
 
     @Override
     public Long getFeatureCount(IoParameters parameters) {
-        try {
-            DbQuery query = dbQueryFactory.createFrom(parameters);
-            return counter.countFeatures(query);
-        } catch (DataAccessException e) {
-            throwCouldNotCountEntityException("feature", e);
-            return -1L;
-        }
+        return count(EntityCounter.FEATURES, "feature", parameters);
     }
 
     @Override
     public Long getProcedureCount(IoParameters parameters) {
-        try {
-            DbQuery query = dbQueryFactory.createFrom(parameters);
-            return counter.countProcedures(query);
-        } catch (DataAccessException e) {
-            throwCouldNotCountEntityException("procedure", e);
-            return -1L;
-        }
+        return count(EntityCounter.PROCEDURES, "procedure", parameters);
     }
 
     @Override
     public Long getPhenomenaCount(IoParameters parameters) {
-        try {
-            DbQuery query = dbQueryFactory.createFrom(parameters);
-            return counter.countPhenomena(query);
-        } catch (DataAccessException e) {
-            throwCouldNotCountEntityException("phenomena", e);
-            return -1L;
-        }
+        return count(EntityCounter.PHENOMENA, "phenomena", parameters);
     }
 
     @Override
     public Long getPlatformCount(IoParameters parameters) {
-        try {
-            DbQuery query = dbQueryFactory.createFrom(parameters);
-            return counter.countPlatforms(query);
-        } catch (DataAccessException e) {
-            throwCouldNotCountEntityException("platform", e);
-            return -1L;
-        }
+        return count(EntityCounter.PLATFORMS, "platform", parameters);
     }
 
     @Override
     public Long getDatasetCount(IoParameters parameters) {
-        try {
-            DbQuery query = dbQueryFactory.createFrom(parameters);
-            return counter.countDatasets(query);
-        } catch (DataAccessException e) {
-            throwCouldNotCountEntityException("dataset", e);
-            return -1L;
-        }
+        return count(EntityCounter.DATASETS, "dataset", parameters);
     }
 
     @Override
     public Long getSamplingCounter(IoParameters parameters) {
-        try {
-            DbQuery query = dbQueryFactory.createFrom(parameters);
-            return counter.countSamplings(query);
-        } catch (DataAccessException e) {
-            throwCouldNotCountEntityException("samplings", e);
-            return -1L;
-        }
+        return count(EntityCounter.SAMPLINGS, "samplings", parameters);
     }
 
     @Override
     public Long getMeasuringProgramCounter(IoParameters parameters) {
-        try {
-            DbQuery query = dbQueryFactory.createFrom(parameters);
-            return counter.countMeasuringPrograms(query);
-        } catch (DataAccessException e) {
-            throwCouldNotCountEntityException("measruing programs", e);
-            return -1L;
-        }
+        return count(EntityCounter.MEASURING_PROGRAMS, "measruing programs", parameters);
     }
 
     @Override
@@ -176,6 +132,18 @@ public class CountingMetadataAccessService implements CountingMetadataService {
         }
     }
 
+    private Long count(String entity, String entityLabel, IoParameters parameters) {
+        try {
+            DbQuery query = dbQueryFactory.createFrom(parameters);
+            return approximateCounts
+                    ? counter.countApproximately(entity, query)
+                    : counter.count(entity, query);
+        } catch (DataAccessException e) {
+            throwCouldNotCountEntityException(entityLabel, e);
+            return -1L;
+        }
+    }
+
     private void throwCouldNotCountEntityException(String entity, DataAccessException e)
             throws InternalServerException {
         throw new InternalServerException("Could not count " + entity + " entities.", e);
@@ -28,7 +28,15 @@
  */
 package org.n52.series.srv;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.n52.io.TvpDataCollection;
 import org.n52.io.request.IoParameters;
@@ -36,6 +44,8 @@ import org.n52.io.response.dataset.AbstractValue;
 import org.n52.io.response.dataset.Data;
 import org.n52.io.response.dataset.DataCollection;
 import org.n52.io.response.dataset.DatasetOutput;
+import org.n52.series.db.Bulkhead;
+import org.n52.series.db.DaoExecutor;
 import org.n52.series.db.DataAccessException;
 import org.n52.series.db.DataRepositoryTypeFactory;
 import org.n52.series.db.DatasetTypesMetadata;
@@ -62,27 +72,107 @@ public class DatasetAccessService<V extends AbstractValue<?>> extends AccessServ
     @Autowired
     private DataRepositoryTypeFactory dataFactory;
 
+    @Autowired(required = false)
+    private DaoExecutor daoExecutor;
+
+    private Bulkhead bulkhead;
+
     public DatasetAccessService(DatasetRepository<V> repository) {
         super(repository);
     }
 
+    /**
+     * @param bulkhead
+     *        the bulkhead data gets retrieved in, datasets are loaded in parallel if it has an executor
+     */
+    public void setBulkhead(Bulkhead bulkhead) {
+        this.bulkhead = bulkhead;
+    }
+
     @Override
     public DataCollection<Data<V>> getData(IoParameters parameters) {
+        List<Future<Map<String, Data<V>>>> results = new ArrayList<>();
         try {
             TvpDataCollection<Data<V>> dataCollection = new TvpDataCollection<>();
             List<DatasetTypesMetadata> datasetTypesMetadata = getRepository().getDatasetTypesMetadata(parameters);
+            boolean groupByResultTime = dbQueryFactory.createFrom(parameters).isGroupByResultTime();
             for (DatasetTypesMetadata metadata : datasetTypesMetadata) {
-                Data<V> data = getDataFor(metadata, parameters);
-                if (data != null) {
-                    dataCollection.addNewSeries(metadata.getId(), data);
+                results.add(groupByResultTime
+                        ? submit(() -> getDataByResultTimeFor(metadata, parameters))
+                        : submit(() -> toSingleData(metadata, getDataFor(metadata, parameters))));
+            }
+            for (int i = 0; i < results.size(); i++) {
+                String datasetId = datasetTypesMetadata.get(i).getId();
+                for (Map.Entry<String, Data<V>> entry : getResult(results.get(i)).entrySet()) {
+                    // grouped data come as one series per result time, e.g. to compare forecast runs
+                    String seriesId = groupByResultTime
+                            ? createResultTimeSeriesId(datasetId, entry.getKey())
+                            : datasetId;
+                    dataCollection.addNewSeries(seriesId, entry.getValue());
                 }
             }
             return dataCollection;
         } catch (DataAccessException e) {
             throw new InternalServerException("Could not get series data from database.", e);
+        } catch (RejectedExecutionException e) {
+            throw new InternalServerException("Could not schedule series data retrieval.", e);
+        } finally {
+            // interrupts loading the remaining datasets if one failed, no-op for completed results
+            results.forEach(result -> result.cancel(true));
+        }
+    }
+
+    /**
+     * Data get loaded in the data bulkhead, either on the {@link DaoExecutor} (if it fans out work), on the
+     * bulkhead's threads or on the calling thread. The returned futures interrupt running tasks when cancelled.
+     */
+    private Future<Map<String, Data<V>>> submit(Callable<Map<String, Data<V>>> task) {
+        if (daoExecutor != null && daoExecutor.isFanOut()) {
+            // still takes connections from the data bulkhead's pool
+            return daoExecutor.submit(() -> callInBulkhead(task));
+        }
+        return bulkhead != null
+                ? bulkhead.submit(task)
+                : runOnCaller(task);
+    }
+
+    private Map<String, Data<V>> callInBulkhead(Callable<Map<String, Data<V>>> task) throws Exception {
+        return bulkhead != null
+                ? bulkhead.call(task)
+                : task.call();
+    }
+
+    private static <T> Future<T> runOnCaller(Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            result.complete(task.call());
+        } catch (Exception e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    private Map<String, Data<V>> getResult(Future<Map<String, Data<V>>> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InternalServerException("Interrupted while getting series data.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new InternalServerException("Could not get series data from database.", cause);
         }
     }
 
+    private Map<String, Data<V>> toSingleData(DatasetTypesMetadata metadata, Data<V> data) {
+        return data != null
+                ? Collections.singletonMap(metadata.getId(), data)
+                : Collections.emptyMap();
+    }
+
     private Data<V> getDataFor(DatasetTypesMetadata metadata, IoParameters parameters)
             throws DataAccessException {
         DbQuery dbQuery = dbQueryFactory.createFrom(parameters);
@@ -92,6 +182,19 @@ public class DatasetAccessService<V extends AbstractValue<?>> extends AccessServ
         return assembler.getData(metadata.getId(), dbQuery);
     }
 
+    private Map<String, Data<V>> getDataByResultTimeFor(DatasetTypesMetadata metadata, IoParameters parameters)
+            throws DataAccessException {
+        DbQuery dbQuery = dbQueryFactory.createFrom(parameters);
+        Class<? extends DatasetEntity> entityType = DatasetEntity.class;
+        DataRepository<? extends DatasetEntity, ?, V, ?> assembler =
+                dataFactory.create(metadata.getObservationType().name(), metadata.getValueType().name(), entityType);
+        return assembler.getDataByResultTime(metadata.getId(), dbQuery);
+    }
+
+    private String createResultTimeSeriesId(String datasetId, String resultTime) {
+        return datasetId + "_" + resultTime;
+    }
+
     private DatasetRepository<V> getRepository() {
         return (DatasetRepository<V>) repository;
     }
@@ -28,9 +28,21 @@
  */
 package org.n52.series.srv;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.n52.io.request.IoParameters;
 import org.n52.io.response.CategoryOutput;
@@ -41,14 +53,34 @@ import org.n52.io.response.ProcedureOutput;
 import org.n52.io.response.dataset.DatasetOutput;
 import org.n52.io.response.dataset.StationOutput;
 import org.n52.io.response.dataset.TimeseriesMetadataOutput;
+import org.hibernate.QueryTimeoutException;
+import org.n52.series.db.DaoExecutor;
+import org.n52.series.db.QueryDeadline;
 import org.n52.series.db.da.OutputAssembler;
+import org.n52.series.db.da.SearchEngine;
 import org.n52.series.spi.search.SearchResult;
 import org.n52.series.spi.search.SearchService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
+/**
+ * Searches all resource types. Each resource type is searched in its own task on a bounded pool, so a search
+ * takes as long as the slowest resource type. Resource types which do not answer within the configured
+ * timeout are skipped and the results of all others get returned. Interrupting a search does not stop a
+ * running JDBC statement, so each search runs with a {@link QueryDeadline}: its queries get the remaining
+ * time as query timeout and are cancelled by the database, which releases their connection, thread (and
+ * permit). If the {@link DaoExecutor} fans out work, searches run on its threads instead of the pool.
+ */
 @SuppressWarnings("deprecation")
 public class Search implements SearchService {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(Search.class);
+
+    private static final int DEFAULT_POOL_SIZE = 6;
+
+    private static final long DEFAULT_TIMEOUT = 10000;
+
     @Autowired
     private OutputAssembler<ProcedureOutput> procedureRepository;
 
@@ -75,22 +107,145 @@ public class Search implements SearchService {
     @Deprecated
     private OutputAssembler<StationOutput> stationRepository;
 
+    @Autowired(required = false)
+    private SearchEngine searchEngine;
+
+    @Autowired(required = false)
+    private DaoExecutor daoExecutor;
+
+    private ExecutorService executor;
+
+    private int poolSize = DEFAULT_POOL_SIZE;
+
+    private long timeout = DEFAULT_TIMEOUT;
+
+    public void init() {
+        if (poolSize > 0) {
+            executor = Executors.newFixedThreadPool(poolSize, new SearchThreadFactory());
+        }
+    }
+
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * @param poolSize
+     *        the number of resource types searched in parallel, values &lt;= 0 search sequentially
+     */
+    public void setPoolSize(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    /**
+     * @param timeout
+     *        the time (in milliseconds) a search may take before results of pending resource types get
+     *        skipped
+     */
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
     @Override
     public Collection<SearchResult> searchResources(IoParameters parameters) {
-        Set<SearchResult> results = new HashSet<>();
-        results.addAll(phenomenonRepository.searchFor(parameters));
-        results.addAll(procedureRepository.searchFor(parameters));
-        results.addAll(featureRepository.searchFor(parameters));
-        results.addAll(categoryRepository.searchFor(parameters));
+        List<OutputAssembler<?>> repositories = new ArrayList<>();
+        repositories.add(phenomenonRepository);
+        repositories.add(procedureRepository);
+        repositories.add(featureRepository);
+        repositories.add(categoryRepository);
 
         if (parameters.shallBehaveBackwardsCompatible()) {
-            results.addAll(timeseriesRepository.searchFor(parameters));
-            results.addAll(stationRepository.searchFor(parameters));
+            repositories.add(timeseriesRepository);
+            repositories.add(stationRepository);
         } else {
-            results.addAll(platformRepository.searchFor(parameters));
-            results.addAll(datasetRepository.searchFor(parameters));
+            repositories.add(platformRepository);
+            repositories.add(datasetRepository);
+        }
+        Set<SearchResult> results = new HashSet<>();
+        if (searchEngine != null && searchEngine.canSearch(parameters)) {
+            results.addAll(searchEngine.search(parameters));
+            repositories.removeIf(searchEngine::covers);
+            if (repositories.isEmpty()) {
+                return results;
+            }
+        }
+        results.addAll(executor != null || daoExecutor != null && daoExecutor.isFanOut()
+                ? searchConcurrently(repositories, parameters)
+                : searchSequentially(repositories, parameters));
+        return results;
+    }
+
+    private Set<SearchResult> searchSequentially(List<OutputAssembler<?>> repositories, IoParameters parameters) {
+        Set<SearchResult> results = new HashSet<>();
+        for (OutputAssembler<?> repository : repositories) {
+            results.addAll(repository.searchFor(parameters));
         }
         return results;
     }
 
+    private Set<SearchResult> searchConcurrently(List<OutputAssembler<?>> repositories, IoParameters parameters) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        List<Future<Collection<SearchResult>>> searches = new ArrayList<>();
+        for (OutputAssembler<?> repository : repositories) {
+            searches.add(submit(() -> QueryDeadline.call(deadline, () -> repository.searchFor(parameters))));
+        }
+        Set<SearchResult> results = new HashSet<>();
+        for (int i = 0; i < searches.size(); i++) {
+            Future<Collection<SearchResult>> search = searches.get(i);
+            try {
+                long remaining = Math.max(0, deadline - System.nanoTime());
+                results.addAll(search.get(remaining, TimeUnit.NANOSECONDS));
+            } catch (TimeoutException | CancellationException e) {
+                search.cancel(true);
+                LOGGER.warn("Search on {} did not finish within {} ms, results are incomplete.",
+                        repositories.get(i).getClass().getSimpleName(), timeout);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof QueryTimeoutException) {
+                    LOGGER.warn("Search on {} was cancelled by the database after {} ms, results are incomplete.",
+                            repositories.get(i).getClass().getSimpleName(), timeout);
+                    continue;
+                }
+                cancelAll(searches);
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IllegalStateException("Search failed.", cause);
+            } catch (InterruptedException e) {
+                cancelAll(searches);
+                Thread.currentThread().interrupt();
+                LOGGER.debug("Search interrupted, results are incomplete.");
+                return results;
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Submits a search as interruptible task, so cancelling its future stops a running search.
+     */
+    private Future<Collection<SearchResult>> submit(Callable<Collection<SearchResult>> search) {
+        return daoExecutor != null && daoExecutor.isFanOut()
+                ? daoExecutor.submit(search)
+                : executor.submit(search);
+    }
+
+    private static void cancelAll(List<Future<Collection<SearchResult>>> searches) {
+        searches.forEach(search -> search.cancel(true));
+    }
+
+    private static final class SearchThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "search-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2015-2021 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.io.extension.resulttime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.joda.time.Interval;
+import org.junit.jupiter.api.Test;
+
+public class ResultTimeRepositoryTest {
+
+    private static final List<Date> RESULT_TIMES = Arrays.asList(at(1), at(2), at(3), at(4), at(5));
+
+    @Test
+    public void when_noIntervalAndLimit_then_selectAll() {
+        assertEquals(RESULT_TIMES, ResultTimeRepository.select(RESULT_TIMES, null, 0));
+    }
+
+    @Test
+    public void when_intervalGiven_then_selectWithinIncludingBounds() {
+        Interval interval = new Interval(new DateTime(at(2)), new DateTime(at(4)));
+        assertEquals(Arrays.asList(at(2), at(3), at(4)), ResultTimeRepository.select(RESULT_TIMES, interval, 0));
+    }
+
+    @Test
+    public void when_limitGiven_then_selectLatestAscending() {
+        assertEquals(Arrays.asList(at(4), at(5)), ResultTimeRepository.select(RESULT_TIMES, null, 2));
+    }
+
+    @Test
+    public void when_limitExceedsResultTimes_then_selectAll() {
+        assertEquals(RESULT_TIMES, ResultTimeRepository.select(RESULT_TIMES, null, 10));
+    }
+
+    @Test
+    public void when_intervalAndLimitGiven_then_limitWithinInterval() {
+        Interval interval = new Interval(new DateTime(at(1)), new DateTime(at(3)));
+        assertEquals(Arrays.asList(at(2), at(3)), ResultTimeRepository.select(RESULT_TIMES, interval, 2));
+    }
+
+    @Test
+    public void when_intervalMatchesNothing_then_selectNothing() {
+        Interval interval = new Interval(new DateTime(at(6)), new DateTime(at(7)));
+        assertEquals(Collections.emptyList(), ResultTimeRepository.select(RESULT_TIMES, interval, 2));
+    }
+
+    private static Date at(int hour) {
+        return new DateTime(2020, 1, 1, hour, 0, DateTimeZone.UTC).toDate();
+    }
+
+}
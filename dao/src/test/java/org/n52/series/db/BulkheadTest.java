@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2015-2021 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+public class BulkheadTest {
+
+    private Bulkhead bulkhead;
+
+    private CountDownLatch release;
+
+    @BeforeEach
+    public void setUp() {
+        bulkhead = new Bulkhead("test", new StubDataSource());
+        bulkhead.setThreads(1);
+        bulkhead.setQueueSize(1);
+        bulkhead.setMaxConnections(2);
+        bulkhead.init();
+        release = new CountDownLatch(1);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        bulkhead.shutdown();
+    }
+
+    @Test
+    public void when_saturated_then_taskRunsOnCaller() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        Future<String> running = bulkhead.submit(() -> {
+            started.countDown();
+            release.await();
+            return Thread.currentThread().getName();
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<String> queued = bulkhead.submit(() -> Thread.currentThread().getName());
+        assertEquals(1, bulkhead.getActiveTasks());
+        assertEquals(1, bulkhead.getQueuedTasks());
+
+        Thread caller = Thread.currentThread();
+        Future<Bulkhead> overflow = bulkhead.submit(() -> {
+            assertSame(caller, Thread.currentThread());
+            return Bulkhead.current();
+        });
+        assertTrue(overflow.isDone());
+        assertSame(bulkhead, overflow.get());
+        assertEquals(1, bulkhead.getCallerRunsTasks());
+        assertEquals(0, bulkhead.getRejectedTasks());
+
+        release.countDown();
+        assertEquals("test-1", running.get(5, TimeUnit.SECONDS));
+        assertEquals("test-1", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void when_executed_then_taskRunsInBulkhead() throws Exception {
+        assertSame(bulkhead, CompletableFuture.supplyAsync(Bulkhead::current, bulkhead).get(5, TimeUnit.SECONDS));
+        assertNull(Bulkhead.current());
+    }
+
+    @Test
+    public void when_shutDown_then_taskRejected() {
+        bulkhead.shutdown();
+        assertThrows(RejectedExecutionException.class, () -> bulkhead.submit(() -> "rejected"));
+        assertEquals(1, bulkhead.getRejectedTasks());
+    }
+
+    @Test
+    public void when_noThreads_then_taskRunsOnCaller() throws Exception {
+        Bulkhead inline = new Bulkhead("inline", new StubDataSource());
+        inline.init();
+        try {
+            Thread caller = Thread.currentThread();
+            assertSame(caller, inline.submit(Thread::currentThread).get());
+            assertEquals(0, inline.getCallerRunsTasks());
+        } finally {
+            inline.shutdown();
+        }
+    }
+
+    @Test
+    public void when_connectionsHeld_then_saturationReported() throws Exception {
+        Connection first = bulkhead.getConnection();
+        Connection second = bulkhead.getConnection("user", "password");
+        assertEquals(2, bulkhead.getActiveConnections());
+        assertEquals(1.0, bulkhead.getConnectionSaturation());
+        first.close();
+        first.close();
+        assertEquals(1, bulkhead.getActiveConnections());
+        assertEquals(2, bulkhead.getPeakConnections());
+        second.close();
+        assertEquals(0.0, bulkhead.getConnectionSaturation());
+    }
+
+    @Test
+    public void when_calledInBulkhead_then_dataSourceUsesItsConnections() throws Exception {
+        BulkheadDataSource dataSource = new BulkheadDataSource(new Bulkhead("default", new StubDataSource()));
+        bulkhead.call(() -> dataSource.getConnection("user", "password"));
+        assertEquals(1, bulkhead.getActiveConnections());
+    }
+
+    private static final class StubDataSource extends AbstractDataSource {
+
+        @Override
+        public Connection getConnection() {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                                                       new Class< ? >[] {Connection.class},
+                                                       (proxy, method, args) -> null);
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) {
+            return getConnection();
+        }
+    }
+
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2015-2021 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+public class ConnectionPoolMetricsTest {
+
+    private C3p0LikePool pool;
+
+    private ConnectionPoolMetrics metrics;
+
+    @BeforeEach
+    public void setUp() {
+        pool = new C3p0LikePool();
+        metrics = new ConnectionPoolMetrics("test", "c3p0");
+        metrics.register(pool);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        metrics.unregister();
+    }
+
+    @Test
+    public void when_c3p0_then_countsReadFromPool() {
+        assertEquals(3, metrics.getActiveConnections());
+        assertEquals(2, metrics.getIdleConnections());
+        assertEquals(5, metrics.getTotalConnections());
+        assertEquals(1, metrics.getThreadsAwaitingConnection());
+        assertEquals(4, metrics.getTimeouts());
+    }
+
+    @Test
+    public void when_c3p0NotTimed_then_timingsNotAvailable() {
+        assertEquals(-1, metrics.getAcquired());
+        assertEquals(-1, metrics.getAverageAcquireMillis());
+        assertEquals(-1, metrics.getMaxHoldMillis());
+    }
+
+    @Test
+    public void when_c3p0Timed_then_acquireRecordedWithoutHoldTimes() throws SQLException {
+        DataSource timed = metrics.createTimedDataSource(pool);
+        timed.getConnection();
+        timed.getConnection();
+        assertEquals(2, metrics.getAcquired());
+        assertEquals(2, pool.checkouts);
+        assertEquals(-1, metrics.getMaxHoldMillis());
+    }
+
+    @Test
+    public void when_reset_then_timeoutsCountedFromThere() {
+        metrics.reset();
+        assertEquals(0, metrics.getTimeouts());
+        pool.failedCheckouts = 6;
+        assertEquals(2, metrics.getTimeouts());
+    }
+
+    @Test
+    public void when_poolUnknown_then_notAvailable() {
+        ConnectionPoolMetrics unknown = new ConnectionPoolMetrics("unknown", "other");
+        assertEquals(-1, unknown.getActiveConnections());
+        assertEquals(-1, unknown.getTimeouts());
+    }
+
+    /**
+     * Provides the metrics of c3p0's <code>PooledDataSource</code>.
+     */
+    public static class C3p0LikePool extends AbstractDataSource {
+
+        private long failedCheckouts = 4;
+
+        private int checkouts;
+
+        public int getNumBusyConnectionsDefaultUser() {
+            return 3;
+        }
+
+        public int getNumIdleConnectionsDefaultUser() {
+            return 2;
+        }
+
+        public int getNumConnectionsDefaultUser() {
+            return 5;
+        }
+
+        public int getNumThreadsAwaitingCheckoutDefaultUser() {
+            return 1;
+        }
+
+        public long getNumFailedCheckoutsDefaultUser() {
+            return failedCheckouts;
+        }
+
+        @Override
+        public Connection getConnection() {
+            checkouts++;
+            return null;
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) {
+            return null;
+        }
+    }
+
+}
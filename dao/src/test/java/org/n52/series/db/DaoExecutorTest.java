@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2015-2021 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class DaoExecutorTest {
+
+    private DaoExecutor executor;
+
+    @AfterEach
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void when_tasksCompleteOutOfOrder_then_resultsInOrderOfItems() {
+        executor = createExecutor(3);
+        List<Integer> results = executor.map(Arrays.asList(30, 20, 10), delay -> {
+            sleep(delay);
+            return delay;
+        });
+        assertEquals(Arrays.asList(30, 20, 10), results);
+    }
+
+    @Test
+    public void when_taskFails_then_pendingTasksCancelled() {
+        executor = createExecutor(1);
+        List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            items.add(i);
+        }
+        AtomicInteger started = new AtomicInteger();
+        IllegalArgumentException failure = assertThrows(IllegalArgumentException.class,
+            () -> executor.map(items, item -> {
+                started.incrementAndGet();
+                if (item == 0) {
+                    throw new IllegalArgumentException("failed");
+                }
+                sleep(20);
+                return item;
+            }));
+        assertEquals("failed", failure.getMessage());
+        assertTrue(started.get() < items.size(), "started " + started.get() + " tasks");
+    }
+
+    @Test
+    public void when_manyTasksSubmitted_then_concurrencyLimited() throws Exception {
+        executor = createExecutor(2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            int item = i;
+            results.add(executor.submit(() -> {
+                peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(10);
+                running.decrementAndGet();
+                return item;
+            }));
+        }
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i, results.get(i).get(5, TimeUnit.SECONDS).intValue());
+        }
+        assertTrue(peak.get() <= 2, "peak concurrency " + peak.get());
+    }
+
+    @Test
+    public void when_virtualThreadsDisabled_then_noFanOutAndRunOnCaller() throws Exception {
+        executor = new DaoExecutor();
+        executor.init();
+        Thread caller = Thread.currentThread();
+        assertFalse(executor.isFanOut());
+        assertEquals(caller, executor.submit(Thread::currentThread).get());
+        assertEquals(Arrays.asList(1, 2), executor.map(Arrays.asList(1, 2), item -> item));
+    }
+
+    private static DaoExecutor createExecutor(int maxConcurrency) {
+        DaoExecutor executor = new DaoExecutor();
+        executor.setVirtualThreads(true);
+        executor.setMaxConcurrency(maxConcurrency);
+        executor.init();
+        return executor;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted", e);
+        }
+    }
+
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright (C) 2015-2021 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+/**
+ * Routes between a primary and two replicas, all stubbed in memory.
+ */
+public class ReplicaRoutingDataSourceTest {
+
+    private StubDataSource primary;
+
+    private StubDataSource first;
+
+    private StubDataSource second;
+
+    @BeforeEach
+    public void setUp() {
+        primary = new StubDataSource();
+        first = new StubDataSource();
+        second = new StubDataSource();
+    }
+
+    @Test
+    public void when_roundRobin_then_replicasAlternate() throws SQLException {
+        ReplicaRoutingDataSource routing = createRouting("round-robin");
+        routing.getConnection().close();
+        routing.getConnection().close();
+        routing.getConnection().close();
+        assertEquals(2, first.opened);
+        assertEquals(1, second.opened);
+        assertEquals(0, primary.opened);
+    }
+
+    @Test
+    public void when_leastConnections_then_leastBusyReplicaChosen() throws SQLException {
+        ReplicaRoutingDataSource routing = createRouting("least-connections");
+        Connection held = routing.getConnection();
+        routing.getConnection();
+        held.close();
+        routing.getConnection();
+        assertEquals(2, first.opened);
+        assertEquals(1, second.opened);
+    }
+
+    @Test
+    public void when_replicaNotValid_then_takenOutOfRotation() throws SQLException {
+        first.valid = false;
+        ReplicaRoutingDataSource routing = createRouting("round-robin");
+        routing.getConnection().close();
+        routing.getConnection().close();
+        assertEquals(0, first.opened);
+        assertEquals(2, second.opened);
+    }
+
+    @Test
+    public void when_noReplicaAvailable_then_primaryUsed() throws SQLException {
+        first.valid = false;
+        second.lag = 60;
+        ReplicaRoutingDataSource routing = createRouting("round-robin");
+        routing.getConnection().close();
+        assertEquals(1, primary.opened);
+        assertEquals(0, first.opened);
+        assertEquals(0, second.opened);
+    }
+
+    @Test
+    public void when_noReplicas_then_primaryUsed() throws SQLException {
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary);
+        routing.init();
+        routing.getConnection().close();
+        assertEquals(1, primary.opened);
+    }
+
+    @Test
+    public void when_postgresql10_then_walFunctionsQueried() {
+        createRouting("round-robin");
+        assertTrue(first.query.contains("pg_last_wal_receive_lsn()"));
+    }
+
+    @Test
+    public void when_postgresql9_then_xlogFunctionsQueried() {
+        first.majorVersion = 9;
+        createRouting("round-robin");
+        assertTrue(first.query.contains("pg_last_xlog_receive_location()"));
+    }
+
+    @Test
+    public void when_otherDatabase_then_lagNotChecked() throws SQLException {
+        first.product = "H2";
+        first.lag = 60;
+        ReplicaRoutingDataSource routing = createRouting("round-robin");
+        routing.getConnection().close();
+        assertNull(first.query);
+        assertEquals(1, first.opened);
+    }
+
+    @Test
+    public void when_lagQueryConfigured_then_usedForAllDatabases() {
+        first.product = "H2";
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary);
+        routing.setReplicas(Arrays.asList(first, second));
+        routing.setHealthCheckInterval(0);
+        routing.setMaxReplicationLag(30);
+        routing.setLagQuery("SELECT lag FROM replication");
+        routing.init();
+        assertEquals("SELECT lag FROM replication", first.query);
+    }
+
+    private ReplicaRoutingDataSource createRouting(String balancing) {
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary);
+        routing.setReplicas(Arrays.asList(first, second));
+        routing.setBalancing(balancing);
+        routing.setHealthCheckInterval(0);
+        routing.setMaxReplicationLag(30);
+        routing.init();
+        // ignore the connections of the health check
+        primary.opened = 0;
+        first.opened = 0;
+        second.opened = 0;
+        return routing;
+    }
+
+    private static final class StubDataSource extends AbstractDataSource {
+
+        private boolean valid = true;
+
+        private double lag;
+
+        private String product = "PostgreSQL";
+
+        private int majorVersion = 10;
+
+        private String query;
+
+        private int opened;
+
+        @Override
+        public Connection getConnection() {
+            opened++;
+            return proxy(Connection.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "isValid":
+                        return valid;
+                    case "getMetaData":
+                        return createMetaData();
+                    case "createStatement":
+                        return createStatement();
+                    default:
+                        return null;
+                }
+            });
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) {
+            return getConnection();
+        }
+
+        private DatabaseMetaData createMetaData() {
+            return proxy(DatabaseMetaData.class, (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getDatabaseProductName":
+                        return product;
+                    case "getDatabaseMajorVersion":
+                        return majorVersion;
+                    default:
+                        return null;
+                }
+            });
+        }
+
+        private Statement createStatement() {
+            return proxy(Statement.class, (proxy, method, args) -> {
+                if ("executeQuery".equals(method.getName())) {
+                    query = (String) args[0];
+                    return proxy(ResultSet.class, (rs, rsMethod, rsArgs) -> {
+                        switch (rsMethod.getName()) {
+                            case "next":
+                                return true;
+                            case "getDouble":
+                                return lag;
+                            default:
+                                return null;
+                        }
+                    });
+                }
+                return null;
+            });
+        }
+
+        private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+            return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class< ? >[] {type}, handler));
+        }
+    }
+
+}
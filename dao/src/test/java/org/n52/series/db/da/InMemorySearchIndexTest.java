@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2015-2021 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.da;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.n52.io.request.IoParameters;
+import org.n52.io.request.Parameters;
+import org.n52.series.db.dao.DbQuery;
+import org.n52.series.spi.search.DatasetSearchResult;
+import org.n52.series.spi.search.SearchResult;
+
+public class InMemorySearchIndexTest {
+
+    private InMemorySearchIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        index = new InMemorySearchIndex();
+        index.setEnabled(true);
+        index.setLocales("en,de");
+        index.setRepositories(Collections.singletonList(new Repository(
+                document("1", "Air Temperature", "Lufttemperatur"),
+                document("2", "Water Temperature", "Wassertemperatur"),
+                document("3", "Wind Speed", "Windgeschwindigkeit"))));
+        index.rebuild();
+    }
+
+    @Test
+    public void when_termInName_then_findCaseInsensitive() {
+        assertEquals(ids("1", "2"), searchIds(createParameters("TEMP", "en")));
+        assertEquals(ids("3"), searchIds(createParameters("d sp", "en")));
+    }
+
+    @Test
+    public void when_termOnlyInLabel_then_noMatch() {
+        assertEquals(ids(), searchIds(createParameters("geschwindigkeit", "de")));
+    }
+
+    @Test
+    public void when_termShorterThanTrigram_then_scanNames() {
+        assertEquals(ids("3"), searchIds(createParameters("wi", "en")));
+    }
+
+    @Test
+    public void when_indexedLocaleRequested_then_labelOfLocale() {
+        Collection<SearchResult> results = index.search(createParameters("wind", "de"));
+        assertEquals(1, results.size());
+        assertEquals("Windgeschwindigkeit", results.iterator().next().getLabel());
+    }
+
+    @Test
+    public void when_localeNotIndexed_then_cannotSearch() {
+        assertTrue(index.canSearch(createParameters("wind", "de")));
+        assertFalse(index.canSearch(createParameters("wind", "fr")));
+    }
+
+    @Test
+    public void when_pagedOrWildcardRequest_then_cannotSearch() {
+        assertFalse(index.canSearch(createParameters("wind", "en").extendWith(Parameters.LIMIT, "10")));
+        assertFalse(index.canSearch(createParameters("wi_d", "en")));
+        assertFalse(index.canSearch(createParameters("wi%", "en")));
+    }
+
+    @Test
+    public void when_notBuilt_then_cannotSearch() {
+        InMemorySearchIndex empty = new InMemorySearchIndex();
+        empty.setEnabled(true);
+        assertFalse(empty.canSearch(createParameters("wind", "en")));
+    }
+
+    private Set<String> searchIds(IoParameters parameters) {
+        return index.search(parameters)
+                    .stream()
+                    .map(SearchResult::getId)
+                    .collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    private static Set<String> ids(String... ids) {
+        return new TreeSet<>(Arrays.asList(ids));
+    }
+
+    private static IoParameters createParameters(String term, String locale) {
+        return IoParameters.createDefaults()
+                           .extendWith(Parameters.SEARCH_TERM, term)
+                           .extendWith("locale", locale);
+    }
+
+    private static SearchDocument document(String id, String name, String germanLabel) {
+        Map<String, String> labels = new HashMap<>();
+        labels.put("en", name);
+        labels.put("de", germanLabel);
+        return new SearchDocument(id, name, labels);
+    }
+
+    private static final class Repository implements IndexableRepository {
+
+        private final List<SearchDocument> documents;
+
+        Repository(SearchDocument... documents) {
+            this.documents = Arrays.asList(documents);
+        }
+
+        @Override
+        public List<SearchDocument> getSearchDocuments(Collection<String> locales) {
+            return documents;
+        }
+
+        @Override
+        public SearchResult createSearchResult(SearchDocument document, DbQuery query) {
+            return new DatasetSearchResult().setId(document.getId()).setLabel(document.getLabel(query.getLocale()));
+        }
+    }
+
+}
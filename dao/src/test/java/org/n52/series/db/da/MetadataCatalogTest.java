@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2015-2021 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.da;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.n52.io.request.IoParameters;
+import org.n52.series.db.dao.DbQuery;
+import org.n52.series.db.dao.DefaultDbQueryFactory;
+
+public class MetadataCatalogTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private MetadataCatalog catalog;
+
+    @BeforeEach
+    public void setUp() {
+        catalog = new MetadataCatalog();
+        catalog.setEnabled(true);
+        catalog.setMaxEntries(2);
+        catalog.init();
+    }
+
+    @Test
+    public void when_listingRequestedTwice_then_loadOnce() {
+        DbQuery query = createQuery("en");
+        catalog.get(getClass(), false, query, this::load);
+        List<Output> outputs = catalog.get(getClass(), false, query, this::load);
+        assertEquals(1, loads.get());
+        assertEquals("a", outputs.get(0).getLabel());
+    }
+
+    @Test
+    public void when_outputModified_then_snapshotUnchanged() {
+        DbQuery query = createQuery("en");
+        List<Output> first = catalog.get(getClass(), false, query, this::load);
+        first.get(0).setLabel("modified");
+        List<Output> second = catalog.get(getClass(), false, query, this::load);
+        assertNotSame(first.get(0), second.get(0));
+        assertEquals("a", second.get(0).getLabel());
+    }
+
+    @Test
+    public void when_nestedValueModified_then_snapshotUnchanged() {
+        DbQuery query = createQuery("en");
+        List<Output> first = catalog.get(getClass(), false, query, this::load);
+        first.get(0).getExtras().put("key", "modified");
+        List<Output> second = catalog.get(getClass(), false, query, this::load);
+        assertNotSame(first.get(0).getExtras(), second.get(0).getExtras());
+        assertEquals("value", second.get(0).getExtras().get("key"));
+    }
+
+    @Test
+    public void when_reloaded_then_replaceSnapshotWithoutDropping() {
+        DbQuery query = createQuery("en");
+        catalog.get(getClass(), false, query, this::load);
+        catalog.reload();
+        List<Output> outputs = catalog.get(getClass(), false, query, this::load);
+        assertEquals(2, loads.get());
+        assertEquals(1, catalog.size());
+        assertEquals("a", outputs.get(0).getLabel());
+    }
+
+    @Test
+    public void when_catalogFull_then_evictInsteadOfBypass() {
+        catalog.get(getClass(), false, createQuery("en"), this::load);
+        catalog.get(getClass(), false, createQuery("de"), this::load);
+        catalog.get(getClass(), false, createQuery("fr"), this::load);
+        assertEquals(3, loads.get());
+        catalog.get(getClass(), false, createQuery("fr"), this::load);
+        assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void when_invalidated_then_reloadAndNotify() {
+        AtomicInteger notifications = new AtomicInteger();
+        catalog.addRefreshListener(notifications::incrementAndGet);
+        DbQuery query = createQuery("en");
+        catalog.get(getClass(), true, query, this::load);
+        catalog.invalidate();
+        catalog.get(getClass(), true, query, this::load);
+        assertEquals(2, loads.get());
+        assertEquals(1, notifications.get());
+    }
+
+    @Test
+    public void when_disabled_then_alwaysLoad() {
+        MetadataCatalog disabled = new MetadataCatalog();
+        disabled.init();
+        DbQuery query = createQuery("en");
+        disabled.get(getClass(), false, query, this::load);
+        disabled.get(getClass(), false, query, this::load);
+        assertEquals(2, loads.get());
+    }
+
+    private List<Output> load() {
+        loads.incrementAndGet();
+        return Arrays.asList(new Output("a"), new Output("b"));
+    }
+
+    private static DbQuery createQuery(String locale) {
+        IoParameters parameters = IoParameters.createDefaults().extendWith("locale", locale);
+        return new DefaultDbQueryFactory().createFrom(parameters);
+    }
+
+    public static class Output {
+
+        private String label;
+
+        private final Map<String, String> extras = new HashMap<>();
+
+        public Output() {
+        }
+
+        Output(String label) {
+            this.label = label;
+            this.extras.put("key", "value");
+        }
+
+        public Map<String, String> getExtras() {
+            return extras;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public void setLabel(String label) {
+            this.label = label;
+        }
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2015-2021 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.da;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+
+public class TransformedGeometryCacheTest {
+
+    private static final String TARGET = "EPSG:4326";
+
+    private final AtomicInteger transformations = new AtomicInteger();
+
+    private final UnaryOperator<Geometry> swapAxes = geometry -> {
+        transformations.incrementAndGet();
+        Coordinate coordinate = geometry.getCoordinate();
+        return createPoint(coordinate.y, coordinate.x, 4326);
+    };
+
+    @Test
+    public void when_sameGeometry_then_transformOnce() {
+        TransformedGeometryCache cache = new TransformedGeometryCache();
+        cache.get(1L, TARGET, createPoint(7, 52, 31467), swapAxes);
+        Geometry cached = cache.get(1L, TARGET, createPoint(7, 52, 31467), swapAxes);
+        assertEquals(1, transformations.get());
+        assertTrue(cached.equalsExact(createPoint(52, 7, 4326)));
+    }
+
+    @Test
+    public void when_geometryChanged_then_transformAgain() {
+        TransformedGeometryCache cache = new TransformedGeometryCache();
+        cache.get(1L, TARGET, createPoint(7, 52, 31467), swapAxes);
+        Geometry moved = cache.get(1L, TARGET, createPoint(8, 52, 31467), swapAxes);
+        assertEquals(2, transformations.get());
+        assertTrue(moved.equalsExact(createPoint(52, 8, 4326)));
+    }
+
+    @Test
+    public void when_sourceCrsChanged_then_transformAgain() {
+        TransformedGeometryCache cache = new TransformedGeometryCache();
+        cache.get(1L, TARGET, createPoint(7, 52, 31467), swapAxes);
+        cache.get(1L, TARGET, createPoint(7, 52, 25832), swapAxes);
+        assertEquals(2, transformations.get());
+    }
+
+    @Test
+    public void when_differentFeatures_then_separateEntries() {
+        TransformedGeometryCache cache = new TransformedGeometryCache();
+        cache.get(1L, TARGET, createPoint(7, 52, 31467), swapAxes);
+        cache.get(2L, TARGET, createPoint(7, 52, 31467), swapAxes);
+        assertEquals(2, transformations.get());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void when_cachedGeometryReturned_then_callersGetCopies() {
+        TransformedGeometryCache cache = new TransformedGeometryCache();
+        Geometry first = cache.get(1L, TARGET, createPoint(7, 52, 31467), swapAxes);
+        Geometry second = cache.get(1L, TARGET, createPoint(7, 52, 31467), swapAxes);
+        assertNotSame(first, second);
+        first.getCoordinate().x = 0;
+        first.geometryChanged();
+        assertTrue(cache.get(1L, TARGET, createPoint(7, 52, 31467), swapAxes).equalsExact(createPoint(52, 7, 4326)));
+    }
+
+    @Test
+    public void when_disabled_then_alwaysTransform() {
+        TransformedGeometryCache cache = new TransformedGeometryCache();
+        cache.setEnabled(false);
+        cache.get(1L, TARGET, createPoint(7, 52, 31467), swapAxes);
+        cache.get(1L, TARGET, createPoint(7, 52, 31467), swapAxes);
+        assertEquals(2, transformations.get());
+        assertEquals(0, cache.size());
+    }
+
+    private static Geometry createPoint(double x, double y, int srid) {
+        return new GeometryFactory(new PrecisionModel(), srid).createPoint(new Coordinate(x, y));
+    }
+
+}
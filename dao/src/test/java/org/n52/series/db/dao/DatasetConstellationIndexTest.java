@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2015-2021 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.dao;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.n52.io.request.IoParameters;
+import org.n52.io.request.Parameters;
+import org.n52.series.db.beans.DatasetEntity;
+import org.n52.series.db.dao.DatasetConstellationIndex.Dimension;
+import org.n52.series.db.dao.DatasetConstellationIndex.Snapshot;
+
+public class DatasetConstellationIndexTest {
+
+    private DatasetConstellationIndex index;
+
+    private Snapshot snapshot;
+
+    @BeforeEach
+    public void setUp() {
+        index = new DatasetConstellationIndex();
+        index.setEnabled(true);
+        snapshot = new Snapshot();
+        // procedure, phenomenon, offering, feature, category, platform
+        snapshot.addDataset(1L, 10L, 20L, 30L, 40L, 50L, 60L);
+        snapshot.addDataset(2L, 11L, 20L, 30L, 41L, 50L, 60L);
+        snapshot.addDataset(3L, 11L, 21L, 31L, 41L, 51L, 61L);
+    }
+
+    @Test
+    public void when_notBuilt_then_notReady() {
+        assertNull(index.resolve(createQuery(Parameters.PHENOMENA, "20"), ""));
+    }
+
+    @Test
+    public void when_filterByPhenomenon_then_matchingDatasets() {
+        index.setSnapshot(snapshot.freeze());
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L)), index.resolve(createQuery(Parameters.PHENOMENA, "20"), ""));
+    }
+
+    @Test
+    public void when_filterCombined_then_intersection() {
+        index.setSnapshot(snapshot.freeze());
+        IoParameters parameters = IoParameters.createDefaults()
+                .extendWith(Parameters.PHENOMENA, "20")
+                .extendWith(Parameters.PROCEDURES, "11");
+        assertEquals(new HashSet<>(Arrays.asList(2L)), index.resolve(createQuery(parameters), ""));
+    }
+
+    @Test
+    public void when_projectedOnProcedures_then_procedureIds() {
+        index.setSnapshot(snapshot.freeze());
+        DbQuery query = createQuery(Parameters.CATEGORIES, "50");
+        assertEquals(new HashSet<>(Arrays.asList(10L, 11L)),
+                index.resolve(query, DatasetEntity.PROPERTY_PROCEDURE));
+    }
+
+    @Test
+    public void when_parentRequested_then_matchChildDatasets() {
+        snapshot.addParent(Dimension.PROCEDURE, 10L, 100L);
+        index.setSnapshot(snapshot.freeze());
+        DbQuery query = createQuery(Parameters.PROCEDURES, "100").setIncludeHierarchy(true);
+        assertEquals(new HashSet<>(Arrays.asList(1L)), index.resolve(query, ""));
+    }
+
+    @Test
+    public void when_largeDatasetIds_then_matchingDatasets() {
+        long large = Integer.MAX_VALUE + 1L;
+        snapshot.addDataset(large, 12L, 20L, 32L, 42L, 52L, 62L);
+        index.setSnapshot(snapshot.freeze());
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L, large)),
+                index.resolve(createQuery(Parameters.PHENOMENA, "20"), ""));
+    }
+
+    @Test
+    public void when_unknownIds_then_leaveToDatabase() {
+        index.setSnapshot(snapshot.freeze());
+        assertNull(index.resolve(createQuery(Parameters.PROCEDURES, "10,99"), ""));
+        assertNull(index.resolve(createQuery(Parameters.FEATURES, "99"), DatasetEntity.PROPERTY_PROCEDURE));
+        assertNull(index.resolve(createQuery(Parameters.DATASETS, "4"), ""));
+    }
+
+    @Test
+    public void when_knownIdsWithoutCommonDataset_then_empty() {
+        index.setSnapshot(snapshot.freeze());
+        IoParameters parameters = IoParameters.createDefaults()
+                .extendWith(Parameters.PHENOMENA, "21")
+                .extendWith(Parameters.PROCEDURES, "10");
+        assertEquals(new HashSet<>(), index.resolve(createQuery(parameters), ""));
+    }
+
+    @Test
+    public void when_sortedIds_then_intersectAndUnion() {
+        assertArrayEquals(new long[] {3, 7}, DatasetConstellationIndex.intersect(new long[] {1, 3, 5, 7},
+                new long[] {3, 4, 7, 9}));
+        assertArrayEquals(new long[] {1, 3, 4, 5}, DatasetConstellationIndex.union(Arrays.asList(
+                new long[] {1, 3, 5}, new long[] {3, 4})));
+    }
+
+    @Test
+    public void when_tooManyDatasetIds_then_leaveToDatabase() {
+        index.setSnapshot(snapshot.freeze());
+        index.setMaxResolvedIds(1);
+        assertNull(index.resolve(createQuery(Parameters.PHENOMENA, "20"), ""));
+    }
+
+    private static DbQuery createQuery(String parameter, String value) {
+        return createQuery(IoParameters.createDefaults().extendWith(parameter, value));
+    }
+
+    private static DbQuery createQuery(IoParameters parameters) {
+        return new DefaultDbQueryFactory().createFrom(parameters);
+    }
+
+}
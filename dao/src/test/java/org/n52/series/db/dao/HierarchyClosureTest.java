@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2015-2021 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.dao;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.n52.series.db.beans.FeatureEntity;
+import org.n52.series.db.beans.OfferingEntity;
+import org.n52.series.db.beans.ProcedureEntity;
+
+public class HierarchyClosureTest {
+
+    private HierarchyClosure closure;
+
+    @BeforeEach
+    public void setUp() {
+        closure = new HierarchyClosure();
+        closure.setEnabled(true);
+        // 1 -> 2 -> 3 -> 4, 1 -> 5
+        Map<Long, Set<Long>> parents = new HashMap<>();
+        parents.put(2L, ids(1L));
+        parents.put(3L, ids(2L));
+        parents.put(4L, ids(3L));
+        parents.put(5L, ids(1L));
+        closure.setHierarchy(FeatureEntity.class, parents);
+    }
+
+    @Test
+    public void when_levelsGiven_then_descendOnlyThatFar() {
+        assertEquals(ids(2L, 5L), closure.getDescendants(FeatureEntity.class, ids(1L), 1));
+        assertEquals(ids(2L, 5L, 3L), closure.getDescendants(FeatureEntity.class, ids(1L), 2));
+        assertEquals(ids(2L, 5L, 3L, 4L), closure.getDescendants(FeatureEntity.class, ids(1L), Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void when_levelBelowOne_then_descendOneLevel() {
+        assertEquals(ids(3L), closure.getDescendants(FeatureEntity.class, ids(2L), 0));
+    }
+
+    @Test
+    public void when_leafRequested_then_noDescendants() {
+        assertTrue(closure.getDescendants(FeatureEntity.class, ids(4L), Integer.MAX_VALUE).isEmpty());
+    }
+
+    @Test
+    public void when_ancestorsRequested_then_allLevels() {
+        assertEquals(ids(3L, 2L, 1L), closure.getAncestors(FeatureEntity.class, ids(4L)));
+        assertEquals(ids(3L), closure.getParents(FeatureEntity.class, 4L));
+        assertTrue(closure.getAncestors(FeatureEntity.class, ids(1L)).isEmpty());
+    }
+
+    @Test
+    public void when_hierarchyIsCyclic_then_terminate() {
+        // 10 -> 11 -> 12 -> 10
+        Map<Long, Set<Long>> parents = new HashMap<>();
+        parents.put(11L, ids(10L));
+        parents.put(12L, ids(11L));
+        parents.put(10L, ids(12L));
+        closure.setHierarchy(ProcedureEntity.class, parents);
+        assertEquals(ids(11L, 12L, 10L), closure.getDescendants(ProcedureEntity.class, ids(10L), Integer.MAX_VALUE));
+        assertEquals(ids(11L, 12L, 10L), closure.getDescendants(ProcedureEntity.class, ids(10L), 100));
+        assertEquals(ids(12L, 11L, 10L), closure.getAncestors(ProcedureEntity.class, ids(10L)));
+    }
+
+    @Test
+    public void when_selfReferencing_then_terminate() {
+        closure.setHierarchy(ProcedureEntity.class, Collections.singletonMap(20L, ids(20L)));
+        assertEquals(ids(20L), closure.getDescendants(ProcedureEntity.class, ids(20L), Integer.MAX_VALUE));
+        assertEquals(ids(20L), closure.getAncestors(ProcedureEntity.class, ids(20L)));
+    }
+
+    @Test
+    public void when_typeNotLoaded_then_notReady() {
+        assertTrue(closure.isReady(FeatureEntity.class));
+        assertFalse(closure.isReady(OfferingEntity.class));
+        assertThrows(IllegalStateException.class,
+            () -> closure.getDescendants(OfferingEntity.class, ids(1L), 1));
+    }
+
+    @Test
+    public void when_disabled_then_notReady() {
+        HierarchyClosure disabled = new HierarchyClosure();
+        disabled.setHierarchy(FeatureEntity.class, Collections.singletonMap(2L, ids(1L)));
+        assertFalse(disabled.isReady(FeatureEntity.class));
+    }
+
+    private static Set<Long> ids(Long... ids) {
+        return new LinkedHashSet<>(Arrays.asList(ids));
+    }
+
+}
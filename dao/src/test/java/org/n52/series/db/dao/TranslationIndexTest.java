@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2015-2021 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.db.dao;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.n52.series.db.beans.i18n.I18nFeatureEntity;
+import org.n52.series.db.beans.i18n.I18nPhenomenonEntity;
+import org.n52.series.db.beans.i18n.I18nProcedureEntity;
+
+public class TranslationIndexTest {
+
+    private TranslationIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        index = new TranslationIndex();
+        index.setEnabled(true);
+        Map<Class<?>, Set<String>> locales = new HashMap<>();
+        locales.put(I18nFeatureEntity.class, new HashSet<>(Arrays.asList("de", "en")));
+        locales.put(I18nPhenomenonEntity.class, new HashSet<>(Arrays.asList("de_DE")));
+        index.setLocales(locales);
+    }
+
+    @Test
+    public void when_localeTranslated_then_hasTranslation() {
+        assertTrue(index.isIndexed(I18nFeatureEntity.class));
+        assertTrue(index.hasTranslation(I18nFeatureEntity.class, "de"));
+        assertFalse(index.hasTranslation(I18nFeatureEntity.class, "fr"));
+    }
+
+    @Test
+    public void when_typeNotIndexed_then_leftToDatabase() {
+        assertFalse(index.isIndexed(I18nProcedureEntity.class));
+        assertFalse(index.hasTranslation(I18nProcedureEntity.class, "de"));
+    }
+
+    @Test
+    public void when_likePatternGiven_then_matchLikeDatabase() {
+        assertTrue(index.hasTranslation(I18nPhenomenonEntity.class, "de%"));
+        assertTrue(index.hasTranslation(I18nPhenomenonEntity.class, "de_DE"));
+        assertTrue(index.hasTranslation(I18nPhenomenonEntity.class, "de_D_"));
+        assertFalse(index.hasTranslation(I18nPhenomenonEntity.class, "de"));
+        assertTrue(index.hasTranslation(I18nPhenomenonEntity.class, "de\\_DE%"));
+        assertFalse(index.hasTranslation(I18nPhenomenonEntity.class, "de\\%"));
+    }
+
+    @Test
+    public void when_caseDiffers_then_noMatch() {
+        assertFalse(index.hasTranslation(I18nFeatureEntity.class, "DE"));
+    }
+
+    @Test
+    public void when_disabled_then_nothingIndexed() {
+        TranslationIndex disabled = new TranslationIndex();
+        assertFalse(disabled.isIndexed(I18nFeatureEntity.class));
+    }
+
+}
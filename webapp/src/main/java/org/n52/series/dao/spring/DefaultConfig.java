@@ -28,6 +28,7 @@
  */
 package org.n52.series.dao.spring;
 
+import org.n52.series.db.RequestScopedSessionStore;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.PropertySource;
@@ -35,6 +36,7 @@ import org.springframework.http.MediaType;
 import org.springframework.web.servlet.View;
 import org.springframework.web.servlet.config.annotation.ContentNegotiationConfigurer;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ViewResolverRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 import org.springframework.web.servlet.view.json.MappingJackson2JsonView;
@@ -51,6 +53,16 @@ public class DefaultConfig implements WebMvcConfigurer {
     @Autowired(required = false)
     private ObjectMapper objectMapper;
 
+    @Autowired(required = false)
+    private RequestScopedSessionStore sessionStore;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (sessionStore != null) {
+            registry.addInterceptor(new SessionScopeInterceptor(sessionStore));
+        }
+    }
+
     @Override
     public void configureContentNegotiation(ContentNegotiationConfigurer configurer) {
         configurer.defaultContentType(MediaType.APPLICATION_JSON)
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2015-2021 52°North Initiative for Geospatial Open Source
+ * Software GmbH
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License version 2 as published
+ * by the Free Software Foundation.
+ *
+ * If the program is linked with libraries which are licensed under one of
+ * the following licenses, the combination of the program with the linked
+ * library is not considered a "derivative work" of the program:
+ *
+ *     - Apache License, version 2.0
+ *     - Apache Software License, version 1.0
+ *     - GNU Lesser General Public License, version 3
+ *     - Mozilla Public License, versions 1.0, 1.1 and 2.0
+ *     - Common Development and Distribution License (CDDL), version 1.0
+ *
+ * Therefore the distribution of the program linked with libraries licensed
+ * under the aforementioned licenses, is permitted by the copyright holders
+ * if the distribution is compliant with both the GNU General Public License
+ * version 2 and the aforementioned licenses.
+ *
+ * This program is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY
+ * or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License
+ * for more details.
+ */
+package org.n52.series.dao.spring;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.n52.series.db.RequestScopedSessionStore;
+import org.n52.series.db.RequestScopedSessionStore.UnitOfWork;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+/**
+ * Binds a unit of work to each request, so all repositories involved share one session.
+ */
+public class SessionScopeInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String UNIT_OF_WORK = SessionScopeInterceptor.class.getName() + ".unitOfWork";
+
+    private final RequestScopedSessionStore sessionStore;
+
+    public SessionScopeInterceptor(RequestScopedSessionStore sessionStore) {
+        this.sessionStore = sessionStore;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        request.setAttribute(UNIT_OF_WORK, sessionStore.begin());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+            Exception ex) {
+        end(request);
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+            Object handler) {
+        // the request thread is released, async processing does not take part in the unit of work
+        end(request);
+    }
+
+    private void end(HttpServletRequest request) {
+        Object unitOfWork = request.getAttribute(UNIT_OF_WORK);
+        if (unitOfWork instanceof UnitOfWork) {
+            request.removeAttribute(UNIT_OF_WORK);
+            ((UnitOfWork) unitOfWork).close();
+        }
+    }
+
+}